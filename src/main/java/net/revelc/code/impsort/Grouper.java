@@ -16,25 +16,65 @@ package net.revelc.code.impsort;
 
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 public final class Grouper {
 
+  /**
+   * The maximum number of distinct import sections remembered by each grouper.
+   */
+  static final int SECTION_CACHE_SIZE = 4096;
+
+  /**
+   * A canonical representation of an import section's contents. Rendering doesn't depend on the
+   * order of the imports, so they are compared as a set.
+   */
+  private static final class SectionKey {
+    private final String eol;
+    private final Set<Import> imports;
+
+    private SectionKey(String eol, Set<Import> imports) {
+      this.eol = eol;
+      this.imports = imports;
+    }
+
+    @Override
+    public int hashCode() {
+      return eol.hashCode() * 31 + imports.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof SectionKey) {
+        SectionKey o = (SectionKey) obj;
+        return eol.equals(o.eol) && imports.equals(o.imports);
+      }
+      return false;
+    }
+  }
+
   private final List<Group> groups;
   private final List<Group> staticGroups;
   private final boolean staticAfter;
   private final boolean joinStaticWithNonStatic;
   private final boolean breadthFirstStatic;
+  private final ImportSymbolTable symbols;
+  // many files, especially generated ones, have identical import sections
+  private final Cache<SectionKey, String> sections =
+      CacheBuilder.newBuilder().maximumSize(SECTION_CACHE_SIZE).recordStats().build();
 
   public Grouper(String groups, String staticGroups, boolean staticAfter,
       boolean joinStaticWithNonStatic, boolean breadthFirstStatic) {
@@ -43,6 +83,24 @@ public final class Grouper {
     this.staticAfter = staticAfter;
     this.joinStaticWithNonStatic = joinStaticWithNonStatic;
     this.breadthFirstStatic = breadthFirstStatic;
+    this.symbols = new ImportSymbolTable(
+        (name, isStatic) -> findGroupOrder(name, isStatic ? this.staticGroups : this.groups));
+  }
+
+  /**
+   * Get the shared symbol for an imported name, with its groups already assigned by this grouper.
+   */
+  ImportSymbol symbol(String name) {
+    return symbols.intern(name);
+  }
+
+  private static int findGroupOrder(String name, List<Group> groups) {
+    for (Group group : groups) {
+      if (group.matches(name)) {
+        return group.getOrder();
+      }
+    }
+    return ImportSymbol.UNASSIGNED;
   }
 
   static ArrayList<Group> parse(String groups) {
@@ -75,47 +133,119 @@ public final class Grouper {
     return parsedGroups;
   }
 
-  static Comparator<Import> depthFirstComparator = (a, b) -> a.getImport().compareTo(b.getImport());
+  static Comparator<Import> depthFirstComparator = (a, b) -> {
+    ImportSymbol first = a.getSymbol();
+    ImportSymbol second = b.getSymbol();
+    return first == second ? 0 : first.getName().compareTo(second.getName());
+  };
   static Comparator<Import> breadthFirstComparator = (a, b) -> {
-    String first = a.getImport();
-    String second = b.getImport();
-    int firstLastDot = first.lastIndexOf(".");
-    int secondLastDot = second.lastIndexOf(".");
-    String firstContainingClass = first.substring(0, firstLastDot);
-    String secondContainingClass = second.substring(0, secondLastDot);
-    int comparison = firstContainingClass.compareTo(secondContainingClass);
+    ImportSymbol first = a.getSymbol();
+    ImportSymbol second = b.getSymbol();
+    if (first == second) {
+      return 0;
+    }
+    int comparison = first.getContainingName().compareTo(second.getContainingName());
     if (comparison == 0) {
-      comparison = first.substring(firstLastDot).compareTo(second.substring(secondLastDot));
+      comparison = first.getSimpleName().compareTo(second.getSimpleName());
     }
     return comparison;
   };
 
   public Map<Integer, ArrayList<Import>> groupNonStatic(Collection<Import> allImports) {
-    return group(allImports, groups, i -> !i.isStatic(), depthFirstComparator);
+    return group(allImports, false, depthFirstComparator);
   }
 
   public Map<Integer, ArrayList<Import>> groupStatic(Collection<Import> allImports) {
-    return group(allImports, staticGroups, i -> i.isStatic(),
-        breadthFirstStatic ? breadthFirstComparator : depthFirstComparator);
+    return group(allImports, true, comparator(true));
   }
 
-  private static Map<Integer, ArrayList<Import>> group(Collection<Import> allImports,
-      List<Group> groups, Predicate<Import> filter, Comparator<Import> itemComparator) {
+  private Map<Integer, ArrayList<Import>> group(Collection<Import> allImports, boolean isStatic,
+      Comparator<Import> itemComparator) {
     Map<Integer, ArrayList<Import>> map = new TreeMap<>();
-    allImports.stream().filter(filter).forEach(imp -> {
-      for (Group group : groups) {
-        if (group.matches(imp.getImport())) {
-          map.computeIfAbsent(group.getOrder(), x -> new ArrayList<>()).add(imp);
-          break;
+    for (Import imp : allImports) {
+      if (imp.isStatic() == isStatic) {
+        int order = groupOrder(imp);
+        if (order != ImportSymbol.UNASSIGNED) {
+          map.computeIfAbsent(order, x -> new ArrayList<>()).add(imp);
         }
       }
-    });
+    }
     for (ArrayList<Import> list : map.values()) {
       list.sort(itemComparator);
     }
     return map;
   }
 
+  int groupOrder(Import imp) {
+    ImportSymbol symbol = imp.getSymbol();
+    if (symbol.getTable() == symbols) {
+      return symbol.getGroupOrder(imp.isStatic());
+    }
+    // not interned by this grouper, so its groups haven't been assigned yet
+    return findGroupOrder(symbol.getName(), imp.isStatic() ? staticGroups : groups);
+  }
+
+  /**
+   * Check whether the given lines are exactly the lines that {@link #groupedImports} would render
+   * for the given imports, without rendering them. The imports are walked once, in the order they
+   * appear in the file, and each is compared with its predecessor: it must come later in the sorted
+   * order, be separated from it by a blank line if and only if it starts a new group, and its line
+   * must match. This stops at the first difference.
+   *
+   * <p>
+   * The imports must be distinct, and have no comments, which are rendered on their lines.
+   *
+   * @param imports the imports, in the order they appear in the file
+   * @param lines the lines of the import section, without any blank lines around it
+   * @return true if the lines are already sorted
+   */
+  boolean isSorted(Iterable<Import> imports, List<String> lines) {
+    int index = 0;
+    Import previous = null;
+    int previousBlock = 0;
+    int previousGroup = 0;
+    for (Import imp : imports) {
+      int group = groupOrder(imp);
+      if (group == ImportSymbol.UNASSIGNED) {
+        return false; // not rendered at all
+      }
+      // the first block is static, unless static imports come after the others
+      int block = imp.isStatic() == staticAfter ? 1 : 0;
+      if (previous != null) {
+        if (block != previousBlock || group != previousGroup) {
+          if (block < previousBlock || (block == previousBlock && group < previousGroup)) {
+            return false;
+          }
+          boolean separated = block == previousBlock || !joinStaticWithNonStatic;
+          if (separated && (index >= lines.size() || !lines.get(index++).isEmpty())) {
+            return false;
+          }
+        } else if (comparator(imp.isStatic()).compare(previous, imp) >= 0) {
+          return false;
+        }
+      }
+      if (index >= lines.size() || !isImportLine(lines.get(index++), imp)) {
+        return false;
+      }
+      previous = imp;
+      previousBlock = block;
+      previousGroup = group;
+    }
+    return index == lines.size();
+  }
+
+  private Comparator<Import> comparator(boolean isStatic) {
+    return isStatic && breadthFirstStatic ? breadthFirstComparator : depthFirstComparator;
+  }
+
+  // matches what Import.appendTo() renders for an import without comments
+  private static boolean isImportLine(String line, Import imp) {
+    String keyword = imp.isStatic() ? "import static " : "import ";
+    String name = imp.getImport();
+    return line.length() == keyword.length() + name.length() + 1 && line.startsWith(keyword)
+        && line.startsWith(name, keyword.length()) && line.charAt(line.length() - 1) == ';';
+  }
+
   public boolean getStaticAfter() {
     return staticAfter;
   }
@@ -124,8 +254,35 @@ public final class Grouper {
     return joinStaticWithNonStatic;
   }
 
+  /**
+   * Render the import section for the given imports, reusing the result for a previous section with
+   * the same contents, if available.
+   *
+   * @param allImports the imports in the section
+   * @param eol the line ending
+   * @return the rendered section
+   */
   public String groupedImports(Collection<Import> allImports, String eol) {
-    StringBuilder sb = new StringBuilder();
+    SectionKey key = new SectionKey(eol, ImmutableSet.copyOf(allImports));
+    String section = sections.getIfPresent(key);
+    if (section == null) {
+      section = renderImports(key.imports, eol);
+      sections.put(key, section);
+    }
+    return section;
+  }
+
+  public long getSectionCacheHits() {
+    return sections.stats().hitCount();
+  }
+
+  public long getSectionCacheMisses() {
+    return sections.stats().missCount();
+  }
+
+  private String renderImports(Collection<Import> allImports, String eol) {
+    // sized for typical import lines, so the imports are appended without growing it much
+    StringBuilder sb = new StringBuilder(64 * allImports.size());
     Map<Integer, ArrayList<Import>> staticImports = groupStatic(allImports);
     Map<Integer, ArrayList<Import>> nonStaticImports = groupNonStatic(allImports);
 
@@ -137,7 +294,10 @@ public final class Grouper {
       if (!firstGroup.getAndSet(false)) {
         sb.append(eol);
       }
-      grouping.forEach(imp -> sb.append(imp).append(eol));
+      for (Import imp : grouping) {
+        imp.appendTo(sb);
+        sb.append(eol);
+      }
     };
     first.values().forEach(consumer);
     if (!getJoinStaticWithNonStatic() && !first.isEmpty() && !second.isEmpty()) {
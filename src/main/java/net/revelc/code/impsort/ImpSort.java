@@ -14,29 +14,13 @@
 
 package net.revelc.code.impsort;
 
-import static com.github.javaparser.javadoc.JavadocBlockTag.Type.EXCEPTION;
-import static com.github.javaparser.javadoc.JavadocBlockTag.Type.THROWS;
-
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.JavaToken;
-import com.github.javaparser.ParseResult;
-import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ParserConfiguration.LanguageLevel;
 import com.github.javaparser.Position;
 import com.github.javaparser.Problem;
+import com.github.javaparser.Range;
 import com.github.javaparser.TokenRange;
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.ImportDeclaration;
-import com.github.javaparser.ast.Node;
-import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.PackageDeclaration;
-import com.github.javaparser.ast.comments.Comment;
-import com.github.javaparser.ast.comments.JavadocComment;
-import com.github.javaparser.javadoc.Javadoc;
-import com.github.javaparser.javadoc.JavadocBlockTag;
-import com.github.javaparser.javadoc.description.JavadocDescription;
-import com.github.javaparser.javadoc.description.JavadocInlineTag;
-import com.github.javaparser.javadoc.description.JavadocSnippet;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
@@ -44,30 +28,36 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.EnumSet;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import net.revelc.code.impsort.Import.Span;
+import net.revelc.code.impsort.ParsedSource.Element;
+import net.revelc.code.impsort.ParsedSource.ImportStatement;
+import net.revelc.code.impsort.ParsedSource.ParseProblem;
+import net.revelc.code.impsort.ParsedSource.SourceComment;
+import net.revelc.code.impsort.ParsedSource.SourcePosition;
 import net.revelc.code.impsort.ex.ImpSortException;
 import net.revelc.code.impsort.ex.ImpSortException.Reason;
 
 public class ImpSort {
 
-  private static final Comparator<Node> BY_POSITION =
-      Comparator.comparing(a -> a.getBegin().orElseThrow());
+  private static final Comparator<Element> BY_POSITION = Comparator.comparing(Element::getBegin);
 
   private final Charset sourceEncoding;
   private final Grouper grouper;
   private final boolean removeUnused;
   private final boolean treatSamePackageAsUnused;
   private final LineEnding lineEnding;
-  private final LanguageLevel languageLevel;
+  private final ParserBackend parser;
   private final boolean ignoreParseErrorsBelowImports;
 
   public ImpSort(final Charset sourceEncoding, final Grouper grouper, final boolean removeUnused,
@@ -79,12 +69,19 @@ public class ImpSort {
   public ImpSort(final Charset sourceEncoding, final Grouper grouper, final boolean removeUnused,
       final boolean treatSamePackageAsUnused, final LineEnding lineEnding,
       final LanguageLevel languageLevel, final boolean ignoreParseErrorsBelowImports) {
+    this(sourceEncoding, grouper, removeUnused, treatSamePackageAsUnused, lineEnding,
+        new JavaParserBackend(languageLevel), ignoreParseErrorsBelowImports);
+  }
+
+  public ImpSort(final Charset sourceEncoding, final Grouper grouper, final boolean removeUnused,
+      final boolean treatSamePackageAsUnused, final LineEnding lineEnding,
+      final ParserBackend parser, final boolean ignoreParseErrorsBelowImports) {
     this.sourceEncoding = sourceEncoding;
     this.grouper = grouper;
     this.removeUnused = removeUnused;
     this.treatSamePackageAsUnused = treatSamePackageAsUnused;
     this.lineEnding = lineEnding;
-    this.languageLevel = languageLevel;
+    this.parser = parser;
     this.ignoreParseErrorsBelowImports = ignoreParseErrorsBelowImports;
   }
 
@@ -111,6 +108,28 @@ public class ImpSort {
   }
 
   public Result parseFile(final Path path, final byte[] buf) throws IOException {
+    return parseFile(path, buf, false);
+  }
+
+  /**
+   * Parses the given contents of the file denoted by this path and returns the result.
+   *
+   * <p>
+   * With <code>headerOnly</code>, only the lines up to the end of the last import statement are
+   * parsed, which bounds the work for a file whose body is very large, or slow to parse. Because
+   * the rest of the file isn't seen, this can't be used to remove unused imports.
+   *
+   * @param path the path
+   * @param buf the contents of the file
+   * @param headerOnly whether to parse only the package declaration and the imports
+   * @return the result
+   * @throws IOException if the Java file can't be parsed
+   */
+  public Result parseFile(final Path path, final byte[] buf, final boolean headerOnly)
+      throws IOException {
+    if (headerOnly && removeUnused) {
+      throw new IllegalStateException("Unused imports can't be found by parsing only the header");
+    }
     if (buf == null || buf.length == 0) {
       return Result.EMPTY_FILE;
     }
@@ -126,45 +145,53 @@ public class ImpSort {
       impLineEnding = lineEnding;
     }
     List<String> fileLines = readAllLines(file);
-    ParseResult<CompilationUnit> parseResult =
-        new JavaParser(new ParserConfiguration().setLanguageLevel(languageLevel)).parse(file);
-    CompilationUnit unit = parseResult.getResult().orElseThrow(() -> {
-      parseResult.getProblems().forEach(System.out::println);
-      return new ImpSortException(path, Reason.UNABLE_TO_PARSE);
-    });
-    List<Problem> reportableProblems = ignoreParseErrorsBelowImports
-        ? ParseProblemFilter.getProblemsAboveFirstTopLevelDeclaration(unit,
-            parseResult.getProblems())
-        : parseResult.getProblems();
-    if (!parseResult.isSuccessful() && !reportableProblems.isEmpty()) {
-      reportableProblems.forEach(System.out::println);
-      throw new ImpSortException(path, Reason.PARTIAL_PARSE);
+    String source = file;
+    if (headerOnly) {
+      int headerLines = countHeaderLines(fileLines);
+      if (headerLines == 0) {
+        return new Result(path, sourceEncoding, fileLines, 0, fileLines.size(), true, () -> "",
+            Collections.emptyList(), impLineEnding, Collections.emptyList(),
+            Collections.emptyList());
+      }
+      // joined with the same number of lines, so positions still refer to the whole file
+      source = String.join("\n", fileLines.subList(0, headerLines));
     }
-    Position packagePosition = unit.getPackageDeclaration().map(p -> p.getEnd().orElseThrow())
-        .orElse(unit.getBegin().orElseThrow());
-    NodeList<ImportDeclaration> importDeclarations = unit.getImports();
+    ParsedSource parsed = parser.parse(path, source);
+    List<ParseProblem> parseProblems =
+        ignoreParseErrorsBelowImports ? parsed.getProblemsAboveFirstTopLevelDeclaration()
+            : parsed.getProblems();
+    if (!parseProblems.isEmpty()) {
+      throw new ImpSortException(path, Reason.PARTIAL_PARSE,
+          parseProblems.stream().map(ParseProblem::getVerboseMessage).collect(Collectors.toList()));
+    }
+    List<Problem> problems = toProblems(parsed.getProblems());
+    // any reportable problems failed the file above
+    List<Problem> reportableProblems = Collections.emptyList();
+    SourcePosition packagePosition = parsed.getHeaderEnd();
+    List<ImportStatement> importDeclarations = parsed.getImports();
     if (importDeclarations.isEmpty()) {
-      return new Result(path, sourceEncoding, fileLines, 0, fileLines.size(), "", "",
-          Collections.emptyList(), impLineEnding, parseResult.getProblems(), reportableProblems);
+      return new Result(path, sourceEncoding, fileLines, 0, fileLines.size(), true, () -> "",
+          Collections.emptyList(), impLineEnding, problems, reportableProblems);
     }
 
     // find orphaned comments before between package and last import
-    Position lastImportPosition =
-        importDeclarations.stream().max(BY_POSITION).orElseThrow().getBegin().orElseThrow();
-    Stream<Comment> orphanedComments = unit.getOrphanComments().parallelStream().filter(c -> {
-      Position p = c.getBegin().orElseThrow();
+    SourcePosition lastImportPosition =
+        importDeclarations.stream().max(BY_POSITION).orElseThrow().getBegin();
+    Stream<SourceComment> orphanedComments = parsed.getOrphanComments().stream().filter(c -> {
+      SourcePosition p = c.getBegin();
       return p.isAfter(packagePosition) && p.isBefore(lastImportPosition);
     });
 
     // create entire import section (with interspersed comments)
-    List<Node> importSectionNodes =
+    List<Element> importSectionNodes =
         Stream.concat(orphanedComments, importDeclarations.stream()).collect(Collectors.toList());
     importSectionNodes.sort(BY_POSITION);
     // position line numbers start at 1, not 0
-    Node firstImport = importSectionNodes.get(0);
-    int start = firstImport.getComment().map(c -> c.getBegin().orElseThrow())
-        .orElse(firstImport.getBegin().orElseThrow()).line - 1;
-    int stop = importSectionNodes.get(importSectionNodes.size() - 1).getEnd().orElseThrow().line;
+    Element firstImport = importSectionNodes.get(0);
+    int start = (firstImport instanceof ImportStatement
+        ? ((ImportStatement) firstImport).getComment().map(Element::getBegin)
+        : Optional.<SourcePosition>empty()).orElse(firstImport.getBegin()).getLine() - 1;
+    int stop = importSectionNodes.get(importSectionNodes.size() - 1).getEnd().getLine();
     // get the original import section lines from the file
     // include surrounding whitespace
     while (start > 0 && fileLines.get(start - 1).trim().isEmpty()) {
@@ -173,60 +200,166 @@ public class ImpSort {
     while (stop < fileLines.size() && fileLines.get(stop).trim().isEmpty()) {
       ++stop;
     }
-    String originalSection = String.join(impLineEnding.getChars(), fileLines.subList(start, stop))
-        + impLineEnding.getChars();
 
-    Set<Import> allImports = convertImportSection(importSectionNodes, impLineEnding.getChars());
+    Set<Import> allImports =
+        convertImportSection(importSectionNodes, impLineEnding.getChars(), grouper);
 
     if (removeUnused) {
-      removeUnusedImports(allImports, tokensInUse(unit));
+      removeUnusedImports(allImports, parsed.getTokensInUse());
       if (treatSamePackageAsUnused) {
-        removeSamePackageImports(allImports, unit.getPackageDeclaration());
+        removeSamePackageImports(allImports, parsed.getPackageName().orElse(""));
+      }
+    }
+    // when nothing needs to be removed, combined, or moved along with a comment, the file's lines
+    // can be checked directly, and the new section only needs rendering if they're not sorted
+    Boolean isSorted = null;
+    if (allImports.size() == importDeclarations.size()
+        && allImports.stream().noneMatch(Import::hasComments)) {
+      isSorted = isSorted(allImports, fileLines, start, stop);
+    }
+
+    String eol = impLineEnding.getChars();
+    // add newline before imports, as long as imports not at start of file
+    String before = start > 0 ? eol : "";
+    // add newline after imports, as long as there's more in file
+    String after = stop < fileLines.size() ? eol : "";
+    Supplier<String> newSection = () -> before + grouper.groupedImports(allImports, eol) + after;
+
+    return new Result(path, sourceEncoding, fileLines, start, stop, isSorted, newSection,
+        allImports, impLineEnding, problems, reportableProblems);
+  }
+
+  /**
+   * Find the number of lines up to and including the end of the last import statement, by skipping
+   * over comments, annotations, and the package declaration at the top of the file.
+   *
+   * @return the number of lines in the header, or 0 if the file has no imports
+   */
+  static int countHeaderLines(List<String> fileLines) {
+    return scanHeader(fileLines, false);
+  }
+
+  /**
+   * Find the length of the part of a file which determines how its imports are sorted, when unused
+   * imports aren't being removed: everything up to and including the first line after the package
+   * declaration and imports which isn't blank, a comment, or an annotation; typically, the start of
+   * the first type declaration. Since no import can come after that line, a file which starts with
+   * the same region sorts the same way, however the rest of it changes.
+   *
+   * @param buf the contents of the file
+   * @param encoding the file's encoding
+   * @return the length of the region in bytes, or the length of the whole file if the region
+   *         doesn't end before it
+   */
+  public static int headerRegionLength(byte[] buf, Charset encoding) {
+    String file = new String(buf, encoding);
+    List<String> lines = new ArrayList<>();
+    List<Integer> lineEnds = new ArrayList<>(); // including the line terminator
+    int lineStart = 0;
+    for (int i = 0; i < file.length(); i++) {
+      char c = file.charAt(i);
+      if (c == '\n' || c == '\r') {
+        lines.add(file.substring(lineStart, i));
+        if (c == '\r' && i + 1 < file.length() && file.charAt(i + 1) == '\n') {
+          i++;
+        }
+        lineEnds.add(i + 1);
+        lineStart = i + 1;
       }
     }
+    int regionLines = scanHeader(lines, true);
+    if (regionLines >= lines.size()) {
+      return buf.length;
+    }
+    return file.substring(0, lineEnds.get(regionLines - 1)).getBytes(encoding).length;
+  }
 
-    String newSection = grouper.groupedImports(allImports, impLineEnding.getChars());
-    if (start > 0) {
-      // add newline before imports, as long as imports not at start of file
-      newSection = impLineEnding.getChars() + newSection;
+  private static int scanHeader(List<String> fileLines, boolean throughFirstDeclaration) {
+    int headerLines = 0;
+    boolean inComment = false;
+    int annotationParens = 0;
+    for (int i = 0; i < fileLines.size(); i++) {
+      String line = fileLines.get(i).trim();
+      if (inComment) {
+        inComment = !line.contains("*/");
+      } else if (annotationParens > 0 || line.startsWith("@")) {
+        // annotations, such as those on the package, may span several lines
+        annotationParens += countOf(line, '(') - countOf(line, ')');
+      } else if (line.startsWith("/*")) {
+        inComment = line.indexOf("*/", 2) < 0;
+      } else if (line.startsWith("import")
+          && (line.length() == 6 || !Character.isJavaIdentifierPart(line.charAt(6)))) {
+        // an import statement may span several lines
+        while (i < fileLines.size() - 1 && fileLines.get(i).indexOf(';') < 0) {
+          i++;
+        }
+        headerLines = i + 1;
+      } else if (!line.isEmpty() && !line.startsWith("//") && !line.startsWith("package")) {
+        return throughFirstDeclaration ? i + 1 : headerLines;
+      }
     }
-    if (stop < fileLines.size()) {
-      // add newline after imports, as long as there's more in file
-      newSection += impLineEnding.getChars();
+    return throughFirstDeclaration ? fileLines.size() : headerLines;
+  }
+
+  private static int countOf(String line, char c) {
+    int count = 0;
+    for (int i = line.indexOf(c); i >= 0; i = line.indexOf(c, i + 1)) {
+      count++;
     }
+    return count;
+  }
 
-    return new Result(path, sourceEncoding, fileLines, start, stop, originalSection, newSection,
-        allImports, impLineEnding, parseResult.getProblems(), reportableProblems);
+  private boolean isSorted(Set<Import> imports, List<String> fileLines, int start, int stop) {
+    // the rendered section is surrounded by exactly one blank line, except at the file's edges
+    int first = start;
+    int last = stop;
+    if (start > 0 && !fileLines.get(first++).isEmpty()) {
+      return false;
+    }
+    if (stop < fileLines.size() && (last <= first || !fileLines.get(--last).isEmpty())) {
+      return false;
+    }
+    return grouper.isSorted(imports, fileLines.subList(first, last));
   }
 
   // return imports, with associated comments, in order found in the file
-  private static Set<Import> convertImportSection(List<Node> importSectionNodes, String eol) {
-    List<Comment> recentComments = new ArrayList<>();
-    LinkedHashSet<Import> allImports = new LinkedHashSet<>(importSectionNodes.size() / 2);
-    for (Node node : importSectionNodes) {
-      if (node instanceof Comment) {
-        recentComments.add((Comment) node);
-      } else if (node instanceof ImportDeclaration) {
-        List<Node> thisImport = new ArrayList<>(2);
-        ImportDeclaration impDecl = (ImportDeclaration) node;
-        thisImport.addAll(recentComments);
-
-        Optional<Comment> impComment = impDecl.getComment();
-        if (impComment.isPresent()) {
-          Comment c = impComment.orElseThrow();
-          if (c.getBegin().orElseThrow().isBefore(impDecl.getBegin().orElseThrow())) {
-            thisImport.add(c);
-            thisImport.add(impDecl);
+  private static Set<Import> convertImportSection(List<Element> importSectionNodes, String eol,
+      Grouper grouper) {
+    List<SourceComment> recentComments = new ArrayList<>();
+    List<Import> allImports = new ArrayList<>(importSectionNodes.size());
+    // the symbols are interned, so duplicates are found without building a key for each import
+    Map<ImportSymbol, Import> byName = new HashMap<>();
+    Map<ImportSymbol, Import> staticByName = new HashMap<>();
+    Set<Import> combined = null; // the earlier occurrences of duplicates, if there are any
+    for (Element node : importSectionNodes) {
+      if (node instanceof SourceComment) {
+        recentComments.add((SourceComment) node);
+      } else if (node instanceof ImportStatement) {
+        ImportStatement impDecl = (ImportStatement) node;
+        SourceComment impComment = impDecl.getComment().orElse(null);
+        Span suffix = Span.EMPTY;
+        if (impComment != null) {
+          if (impComment.getBegin().isBefore(impDecl.getBegin())) {
+            recentComments.add(impComment);
           } else {
-            thisImport.add(impDecl);
-            thisImport.add(c);
+            suffix = toSpan(impComment);
           }
-        } else {
-          thisImport.add(impDecl);
         }
-
+        Import imp = new Import(impDecl.isStatic(), grouper.symbol(impDecl.getName()),
+            toPrefix(recentComments, eol), suffix, eol);
         recentComments.clear();
-        convertAndAddImport(allImports, thisImport, eol);
+        Map<ImportSymbol, Import> names = imp.isStatic() ? staticByName : byName;
+        Import candidate = names.get(imp.getSymbol());
+        if (candidate != null) {
+          // a combined duplicate moves to the position of the last occurrence
+          if (combined == null) {
+            combined = Collections.newSetFromMap(new IdentityHashMap<>());
+          }
+          combined.add(candidate);
+          imp = candidate.combineWith(imp);
+        }
+        names.put(imp.getSymbol(), imp);
+        allImports.add(imp);
       } else {
         throw new IllegalStateException("Unknown node: " + node);
       }
@@ -235,112 +368,45 @@ public class ImpSort {
       throw new IllegalStateException(
           "Unexpectedly found more orphaned comments: " + recentComments);
     }
-    return allImports;
-  }
-
-  private static void convertAndAddImport(LinkedHashSet<Import> allImports, List<Node> thisImport,
-      String eol) {
-    boolean isStatic = false;
-    String importItem = null;
-    StringBuilder prefixBuilder = new StringBuilder();
-    StringBuilder suffixBuilder = new StringBuilder();
-    for (Node n : thisImport) {
-      if (n instanceof Comment) {
-        if (importItem == null) {
-          prefixBuilder.append(n.toString());
-        } else {
-          suffixBuilder.append(n.toString());
-        }
-      }
-      if (n instanceof ImportDeclaration) {
-        ImportDeclaration i = (ImportDeclaration) n;
-        isStatic = i.isStatic();
-        importItem = i.getName().asString() + (i.isAsterisk() ? ".*" : "");
-      }
-    }
-    String suffix = suffixBuilder.toString().trim();
-    if (!suffix.isEmpty()) {
-      suffix = " " + suffix;
-    }
-    Import imp = new Import(isStatic, importItem, prefixBuilder.toString().trim(), suffix, eol);
-    Iterator<Import> iter = allImports.iterator();
-    // this de-duplication can probably be made more efficient by doing it all at the end
-    while (iter.hasNext()) {
-      Import candidate = iter.next(); // potential duplicate
-      if (candidate.isDuplicatedBy(imp)) {
-        iter.remove();
-        imp = candidate.combineWith(imp);
-      }
+    if (combined != null) {
+      allImports.removeIf(combined::contains);
     }
-    allImports.add(imp);
+    return new LinkedHashSet<>(allImports);
   }
 
-  /*
-   * Extract all of the tokens from the main body of the file.
-   *
-   * This set of tokens represents all of the file's dependencies, and is used to figure out whether
-   * or not an import is unused.
-   */
-  private static Set<String> tokensInUse(CompilationUnit unit) {
-
-    // Extract tokens from the java code:
-    Stream<Node> packageDecl = unit.getPackageDeclaration().isPresent()
-        ? Stream.of(unit.getPackageDeclaration().orElseThrow())
-            .map(PackageDeclaration::getAnnotations).flatMap(NodeList::stream)
-        : Stream.empty();
-    Stream<String> typesInCode = Stream.concat(packageDecl, unit.getTypes().stream())
-        .map(Node::getTokenRange).filter(Optional::isPresent).map(Optional::orElseThrow)
-        .filter(r -> r != TokenRange.INVALID).flatMap(r -> {
-          // get all JavaTokens as strings from each range
-          return StreamSupport.stream(r.spliterator(), false);
-        }).map(JavaToken::asString);
-
-    // Extract referenced class names from parsed javadoc comments:
-    Stream<String> typesInJavadocs = unit.getAllComments().stream()
-        .filter(c -> c instanceof JavadocComment).map(JavadocComment.class::cast)
-        .map(JavadocComment::parse).flatMap(ImpSort::parseJavadoc);
-
-    return Stream.concat(typesInCode, typesInJavadocs)
-        .filter(t -> t != null && !t.isEmpty() && Character.isJavaIdentifierStart(t.charAt(0)))
-        .collect(Collectors.toSet());
+  // given by the result as JavaParser's problems, whichever backend found them
+  private static List<Problem> toProblems(List<ParseProblem> problems) {
+    return problems.stream().map(p -> new Problem(p.getMessage(), p.getPosition().map(pos -> {
+      Position position = new Position(pos.getLine(), pos.getColumn());
+      JavaToken token = new JavaToken(new Range(position, position), JavaToken.Kind.EOF.getKind(),
+          "", null, null);
+      return new TokenRange(token, token);
+    }).orElse(null), p.getCause().orElse(null))).collect(Collectors.toList());
   }
 
-  // parse both main doc description and any block tags
-  private static Stream<String> parseJavadoc(Javadoc javadoc) {
-    // parse main doc description
-    Stream<String> stringsFromJavadocDescription =
-        Stream.of(javadoc.getDescription()).flatMap(ImpSort::parseJavadocDescription);
-    // grab tag names and parsed descriptions for block tags
-    Stream<String> stringsFromBlockTags = javadoc.getBlockTags().stream().flatMap(tag -> {
-      // only @throws and @exception have names who are importable; @param and others don't
-      EnumSet<JavadocBlockTag.Type> blockTagTypesWithImportableNames =
-          EnumSet.of(THROWS, EXCEPTION);
-      Stream<String> importableTagNames = blockTagTypesWithImportableNames.contains(tag.getType())
-          ? Stream.of(tag.getName()).filter(Optional::isPresent).map(Optional::orElseThrow)
-          : Stream.empty();
-      Stream<String> tagDescriptions =
-          Stream.of(tag.getContent()).flatMap(ImpSort::parseJavadocDescription);
-      return Stream.concat(importableTagNames, tagDescriptions);
-    });
-    return Stream.concat(stringsFromJavadocDescription, stringsFromBlockTags);
+  private static Span toSpan(SourceComment comment) {
+    return Span.trimmed(comment.getSource(), comment.getStartOffset(), comment.getEndOffset());
   }
 
-  private static Stream<String> parseJavadocDescription(JavadocDescription description) {
-    return description.getElements().stream().map(element -> {
-      if (element instanceof JavadocInlineTag) {
-        // inline tags like {@link Foo}
-        return ((JavadocInlineTag) element).getContent();
-      } else if (element instanceof JavadocSnippet) {
-        // snippets like @see Foo
-        return element.toText();
-      } else {
-        // try to handle unknown elements as best we can
-        return element.toText();
+  private static Span toPrefix(List<SourceComment> comments, String eol) {
+    if (comments.isEmpty()) {
+      return Span.EMPTY;
+    }
+    if (comments.size() == 1) {
+      return toSpan(comments.get(0));
+    }
+    // each comment on its own line, as they are rewritten
+    StringBuilder prefix = new StringBuilder();
+    for (SourceComment comment : comments) {
+      Span text = toSpan(comment);
+      if (!text.isEmpty()) {
+        if (prefix.length() > 0) {
+          prefix.append(eol);
+        }
+        text.appendTo(prefix);
       }
-    }).flatMap(s -> {
-      // split text descriptions into word tokens
-      return Stream.of(s.split("\\W+"));
-    });
+    }
+    return Span.trimmed(prefix.toString());
   }
 
   /*
@@ -354,12 +420,11 @@ public class ImpSort {
    */
   private static void removeUnusedImports(Set<Import> imports, Set<String> tokensInUse) {
     imports.removeIf(i -> {
-      String[] segments = i.getImport().split("[.]");
-      if (segments.length == 0) {
+      String lastSegment = i.getSymbol().getSimpleName();
+      if (lastSegment.isEmpty()) {
         throw new AssertionError("Parse tree includes invalid import statements");
       }
 
-      String lastSegment = segments[segments.length - 1];
       if (lastSegment.equals("*")) {
         return false;
       }
@@ -370,13 +435,18 @@ public class ImpSort {
 
   static void removeSamePackageImports(Set<Import> imports,
       Optional<PackageDeclaration> packageDeclaration) {
-    String packageName = packageDeclaration.map(p -> p.getName().toString()).orElse("");
+    removeSamePackageImports(imports,
+        packageDeclaration.map(p -> p.getName().toString()).orElse(""));
+  }
+
+  static void removeSamePackageImports(Set<Import> imports, String packageName) {
     imports.removeIf(i -> {
-      String imp = i.getImport();
+      ImportSymbol symbol = i.getSymbol();
       if (packageName.isEmpty()) {
-        return !imp.contains(".");
+        return symbol.getContainingName().isEmpty();
       }
-      return imp.startsWith(packageName) && imp.lastIndexOf(".") <= packageName.length();
+      return symbol.getName().startsWith(packageName)
+          && symbol.getContainingName().length() <= packageName.length();
     });
 
   }
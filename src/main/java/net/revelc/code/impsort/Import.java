@@ -18,16 +18,88 @@ import java.util.Objects;
 
 public class Import {
 
+  /**
+   * A range of characters in the source, such as a comment, which is referred to, rather than
+   * copied, until the import is rendered.
+   */
+  static final class Span {
+
+    static final Span EMPTY = new Span("", 0, 0);
+
+    private final String text;
+    private final int start;
+    private final int end;
+
+    private Span(String text, int start, int end) {
+      this.text = text;
+      this.start = start;
+      this.end = end;
+    }
+
+    /**
+     * The given text, without any leading or trailing whitespace, as trimmed by
+     * {@link String#trim()}.
+     */
+    static Span trimmed(String text) {
+      return trimmed(text, 0, text.length());
+    }
+
+    /**
+     * The given range of the text, without any leading or trailing whitespace.
+     */
+    static Span trimmed(String text, int start, int end) {
+      while (start < end && text.charAt(start) <= ' ') {
+        start++;
+      }
+      while (end > start && text.charAt(end - 1) <= ' ') {
+        end--;
+      }
+      return start == end ? EMPTY : new Span(text, start, end);
+    }
+
+    boolean isEmpty() {
+      return start == end;
+    }
+
+    void appendTo(StringBuilder sb) {
+      sb.append(text, start, end);
+    }
+
+    boolean contentEquals(Span other) {
+      return end - start == other.end - other.start
+          && text.regionMatches(start, other.text, other.start, end - start);
+    }
+
+    @Override
+    public String toString() {
+      return text.substring(start, end);
+    }
+  }
+
   private final boolean isStatic;
-  private final String imp;
-  private final String prefix;
-  private final String suffix;
+  private final ImportSymbol symbol;
+  private final Span prefix;
+  private final Span suffix;
   private final String eol;
 
   Import(final boolean isStatic, final String imp, final String prefix, final String suffix,
       final String eol) {
+    this(isStatic, ImportSymbol.of(imp), Span.trimmed(prefix), Span.trimmed(suffix), eol);
+  }
+
+  /**
+   * Create an import.
+   *
+   * @param isStatic whether the import is static
+   * @param symbol the imported name
+   * @param prefix the comments on the lines before the import statement
+   * @param suffix the comments on the same line, after the import statement
+   * @param eol the line ending between the prefix and the statement
+   */
+  Import(final boolean isStatic, final ImportSymbol symbol, final Span prefix, final Span suffix,
+      final String eol) {
     this.isStatic = isStatic;
-    this.imp = Objects.requireNonNull(imp);
+    this.symbol = Objects.requireNonNull(symbol);
     this.prefix = Objects.requireNonNull(prefix);
     this.suffix = Objects.requireNonNull(suffix);
     this.eol = eol;
@@ -38,21 +110,47 @@ public class Import {
   }
 
   public String getImport() {
-    return imp;
+    return symbol.getName();
+  }
+
+  ImportSymbol getSymbol() {
+    return symbol;
   }
 
   public String getPrefix() {
-    return prefix;
+    return prefix.toString();
   }
 
   public String getSuffix() {
-    return suffix;
+    return suffix.isEmpty() ? "" : " " + suffix;
+  }
+
+  boolean hasComments() {
+    return !prefix.isEmpty() || !suffix.isEmpty();
+  }
+
+  /**
+   * Render this import, with its comments, into the given buffer.
+   *
+   * @param sb the buffer
+   */
+  void appendTo(StringBuilder sb) {
+    if (!prefix.isEmpty()) {
+      prefix.appendTo(sb);
+      sb.append(eol);
+    }
+    sb.append(isStatic ? "import static " : "import ").append(symbol.getName()).append(';');
+    if (!suffix.isEmpty()) {
+      sb.append(' ');
+      suffix.appendTo(sb);
+    }
   }
 
   @Override
   public String toString() {
-    return prefix + (prefix.isEmpty() ? "" : eol) + "import" + (isStatic() ? " static" : "") + " "
-        + getImport() + ";" + suffix;
+    StringBuilder sb = new StringBuilder();
+    appendTo(sb);
+    return sb.toString();
   }
 
   @Override
@@ -68,34 +166,34 @@ public class Import {
 
     if (obj instanceof Import) {
       Import o2 = (Import) obj;
-      return isStatic == o2.isStatic && imp.contentEquals(o2.imp) && prefix.contentEquals(o2.prefix)
-          && suffix.contentEquals(o2.suffix);
+      return isStatic == o2.isStatic && symbol.nameEquals(o2.symbol)
+          && prefix.contentEquals(o2.prefix) && suffix.contentEquals(o2.suffix);
     }
     return false;
   }
 
   public boolean isDuplicatedBy(Import other) {
-    return isStatic() == other.isStatic() && getImport().contentEquals(other.getImport());
+    return isStatic() == other.isStatic() && symbol.nameEquals(other.symbol);
   }
 
   public Import combineWith(Import duplicate) {
-    String newPrefix;
-    String newSuffix;
-    if (getPrefix().isEmpty()) {
-      newPrefix = duplicate.getPrefix();
-    } else if (duplicate.getPrefix().isEmpty()) {
-      newPrefix = getPrefix();
+    Span newPrefix;
+    Span newSuffix;
+    if (prefix.isEmpty()) {
+      newPrefix = duplicate.prefix;
+    } else if (duplicate.prefix.isEmpty()) {
+      newPrefix = prefix;
     } else {
-      newPrefix = getPrefix() + eol + duplicate.getPrefix();
+      newPrefix = Span.trimmed(prefix + eol + duplicate.prefix);
     }
-    if (getSuffix().isEmpty()) {
-      newSuffix = duplicate.getSuffix();
-    } else if (duplicate.getSuffix().isEmpty()) {
-      newSuffix = getSuffix();
+    if (suffix.isEmpty()) {
+      newSuffix = duplicate.suffix;
+    } else if (duplicate.suffix.isEmpty()) {
+      newSuffix = suffix;
     } else {
-      newSuffix = getSuffix() + duplicate.getSuffix();
+      newSuffix = Span.trimmed(suffix + " " + duplicate.suffix);
     }
-    return new Import(isStatic(), getImport(), newPrefix, newSuffix, eol);
+    return new Import(isStatic(), symbol, newPrefix, newSuffix, eol);
   }
 
 }
@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort;
+
+import java.util.Objects;
+
+/**
+ * An imported name, split at its last segment, along with the groups it belongs to. Symbols created
+ * by an {@link ImportSymbolTable} are shared by all imports of the same name, and have a compact id
+ * which is unique within the table, so they can be compared and hashed without looking at their
+ * names, and their groups only have to be found once.
+ */
+final class ImportSymbol {
+
+  static final int UNASSIGNED = -1;
+
+  private final ImportSymbolTable table;
+  private final int id;
+  private final String name;
+  private final String containingName;
+  private final String simpleName;
+  private final int groupOrder;
+  private final int staticGroupOrder;
+
+  ImportSymbol(ImportSymbolTable table, int id, String name, int groupOrder, int staticGroupOrder) {
+    this.table = table;
+    this.id = id;
+    this.name = Objects.requireNonNull(name);
+    int lastDot = name.lastIndexOf('.');
+    this.containingName = lastDot < 0 ? "" : name.substring(0, lastDot);
+    this.simpleName = lastDot < 0 ? name : name.substring(lastDot + 1);
+    this.groupOrder = groupOrder;
+    this.staticGroupOrder = staticGroupOrder;
+  }
+
+  /**
+   * Create a symbol which doesn't belong to any table, and has no groups assigned.
+   *
+   * @param name the imported name
+   * @return the new symbol
+   */
+  static ImportSymbol of(String name) {
+    return new ImportSymbol(null, UNASSIGNED, name, UNASSIGNED, UNASSIGNED);
+  }
+
+  ImportSymbolTable getTable() {
+    return table;
+  }
+
+  int getId() {
+    return id;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  /**
+   * The name without its last segment; for a static import, this is the containing class.
+   */
+  String getContainingName() {
+    return containingName;
+  }
+
+  /**
+   * The last segment of the name; typically a class, or static member, name, or <code>*</code>.
+   */
+  String getSimpleName() {
+    return simpleName;
+  }
+
+  int getGroupOrder(boolean isStatic) {
+    return isStatic ? staticGroupOrder : groupOrder;
+  }
+
+  boolean nameEquals(ImportSymbol other) {
+    if (table != null && table == other.table) {
+      return id == other.id; // interned, so each name has one id
+    }
+    return name.equals(other.name);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof ImportSymbol && table == ((ImportSymbol) obj).table
+        && nameEquals((ImportSymbol) obj);
+  }
+
+  @Override
+  public int hashCode() {
+    // ids are assigned in sequence, so they spread evenly across a hash table without hashing names
+    return table == null ? name.hashCode() : id;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Interns imported names into {@link ImportSymbol}s, which are shared by all files processed with
+ * the same {@link Grouper}. Since the same few thousand names tend to be imported throughout a
+ * project, splitting names and matching them against groups is only done once per name. Safe for
+ * concurrent use.
+ */
+final class ImportSymbolTable {
+
+  private final ConcurrentHashMap<String, ImportSymbol> symbols = new ConcurrentHashMap<>();
+  private final AtomicInteger nextId = new AtomicInteger();
+  private final ToIntBiFunction<String, Boolean> groupFinder;
+
+  /**
+   * Create a new table.
+   *
+   * @param groupFinder finds the order of the group an import belongs to, given the imported name
+   *        and whether the import is static
+   */
+  ImportSymbolTable(ToIntBiFunction<String, Boolean> groupFinder) {
+    this.groupFinder = groupFinder;
+  }
+
+  ImportSymbol intern(String name) {
+    ImportSymbol symbol = symbols.get(name);
+    if (symbol == null) {
+      symbol = symbols.computeIfAbsent(name, n -> new ImportSymbol(this, nextId.getAndIncrement(),
+          n, groupFinder.applyAsInt(n, false), groupFinder.applyAsInt(n, true)));
+    }
+    return symbol;
+  }
+
+  int size() {
+    return symbols.size();
+  }
+
+}
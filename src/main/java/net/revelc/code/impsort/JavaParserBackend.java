@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ParserConfiguration.LanguageLevel;
+import com.github.javaparser.Position;
+import com.github.javaparser.Problem;
+import com.github.javaparser.TokenRange;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.PackageDeclaration;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.comments.JavadocComment;
+import com.google.common.base.Suppliers;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import net.revelc.code.impsort.ParsedSource.ImportStatement;
+import net.revelc.code.impsort.ParsedSource.ParseProblem;
+import net.revelc.code.impsort.ParsedSource.SourceComment;
+import net.revelc.code.impsort.ParsedSource.SourcePosition;
+import net.revelc.code.impsort.ex.ImpSortException;
+import net.revelc.code.impsort.ex.ImpSortException.Reason;
+
+/**
+ * The default {@link ParserBackend}, which builds a complete syntax tree of each file with
+ * JavaParser.
+ */
+public final class JavaParserBackend implements ParserBackend {
+
+  private final LanguageLevel languageLevel;
+
+  public JavaParserBackend(final LanguageLevel languageLevel) {
+    this.languageLevel = languageLevel;
+  }
+
+  @Override
+  public ParsedSource parse(final Path path, final String source) throws ImpSortException {
+    ParseResult<CompilationUnit> parseResult =
+        new JavaParser(new ParserConfiguration().setLanguageLevel(languageLevel)).parse(source);
+    CompilationUnit unit = parseResult.getResult()
+        .orElseThrow(() -> new ImpSortException(path, Reason.UNABLE_TO_PARSE, parseResult
+            .getProblems().stream().map(Problem::getVerboseMessage).collect(Collectors.toList())));
+    List<Problem> problems = parseResult.getProblems();
+    SourcePosition headerEnd = toPosition(unit.getPackageDeclaration()
+        .map(p -> p.getEnd().orElseThrow()).orElse(unit.getBegin().orElseThrow()));
+    // only built for files with comments
+    Supplier<LineIndex> lines = Suppliers.memoize(() -> new LineIndex(source));
+    List<ImportStatement> imports = unit.getImports().stream()
+        .map(i -> new ImportStatement(toPosition(i.getBegin().orElseThrow()),
+            toPosition(i.getEnd().orElseThrow()), i.isStatic(),
+            i.getName().asString() + (i.isAsterisk() ? ".*" : ""),
+            i.getComment().map(c -> toSourceComment(source, lines, c)).orElse(null)))
+        .collect(Collectors.toList());
+    List<SourceComment> orphanComments = unit.getOrphanComments().stream()
+        .map(c -> toSourceComment(source, lines, c)).collect(Collectors.toList());
+    return new ParsedSource(headerEnd,
+        unit.getPackageDeclaration().map(PackageDeclaration::getNameAsString).orElse(null), imports,
+        orphanComments, toParseProblems(problems),
+        toParseProblems(
+            ParseProblemFilter.getProblemsAboveFirstTopLevelDeclaration(unit, problems)),
+        () -> tokensInUse(unit));
+  }
+
+  private static SourcePosition toPosition(Position position) {
+    return new SourcePosition(position.line, position.column);
+  }
+
+  private static List<ParseProblem> toParseProblems(List<Problem> problems) {
+    return problems.stream()
+        .map(p -> new ParseProblem(p.getMessage(),
+            ParseProblemFilter.toRange(p).map(r -> toPosition(r.begin)).orElse(null),
+            p.getCause().orElse(null)))
+        .collect(Collectors.toList());
+  }
+
+  // sliced from the source, rather than printed again by JavaParser, which reformats comments
+  private static SourceComment toSourceComment(String source, Supplier<LineIndex> lines,
+      Comment comment) {
+    SourcePosition begin = toPosition(comment.getBegin().orElseThrow());
+    SourcePosition end = toPosition(comment.getEnd().orElseThrow());
+    return new SourceComment(begin, end, source, lines.get().offset(begin),
+        lines.get().offset(end) + 1);
+  }
+
+  /*
+   * Extract all of the tokens from the main body of the file.
+   *
+   * This set of tokens represents all of the file's dependencies, and is used to figure out whether
+   * or not an import is unused.
+   */
+  private static Set<String> tokensInUse(CompilationUnit unit) {
+
+    // Extract tokens from the java code:
+    Stream<Node> packageDecl = unit.getPackageDeclaration().isPresent()
+        ? Stream.of(unit.getPackageDeclaration().orElseThrow())
+            .map(PackageDeclaration::getAnnotations).flatMap(NodeList::stream)
+        : Stream.empty();
+    Stream<String> typesInCode = Stream.concat(packageDecl, unit.getTypes().stream())
+        .map(Node::getTokenRange).filter(Optional::isPresent).map(Optional::orElseThrow)
+        .filter(r -> r != TokenRange.INVALID).flatMap(r -> {
+          // get all JavaTokens as strings from each range
+          return StreamSupport.stream(r.spliterator(), false);
+        }).map(JavaToken::asString);
+
+    // Extract referenced class names from parsed javadoc comments:
+    Stream<String> typesInJavadocs = unit.getAllComments().stream()
+        .filter(c -> c instanceof JavadocComment).map(JavadocComment.class::cast)
+        .map(JavadocComment::parse).flatMap(UsedTokens::inJavadoc);
+
+    return UsedTokens.collect(Stream.concat(typesInCode, typesInJavadocs));
+  }
+
+}
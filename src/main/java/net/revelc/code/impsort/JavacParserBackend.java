@@ -0,0 +1,486 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort;
+
+import com.github.javaparser.ParserConfiguration.LanguageLevel;
+import com.github.javaparser.ast.comments.TraditionalJavadocComment;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.PackageTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.Trees;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import net.revelc.code.impsort.ParsedSource.ImportStatement;
+import net.revelc.code.impsort.ParsedSource.ParseProblem;
+import net.revelc.code.impsort.ParsedSource.SourceComment;
+import net.revelc.code.impsort.ParsedSource.SourcePosition;
+import net.revelc.code.impsort.ex.ImpSortException;
+import net.revelc.code.impsort.ex.ImpSortException.Reason;
+
+/**
+ * A {@link ParserBackend} which uses the parser of the running JDK's compiler, through the
+ * <code>com.sun.source</code> API, without analyzing or compiling anything. It accepts any syntax
+ * the running JDK accepts, independently of the bundled JavaParser release, and avoids building
+ * JavaParser's token list and comment tree for the whole file.
+ *
+ * <p>
+ * The javac syntax tree doesn't include comments, so they are found by scanning the source text,
+ * and attached to the import statements following the same rules as JavaParser: a line comment
+ * belongs to the statements on its line, and otherwise a comment belongs to the statement which
+ * follows it, unless they are separated by a blank line or another comment. The identifiers used by
+ * the file are likewise found by scanning the text of its declarations.
+ *
+ * <p>
+ * This needs a JDK, rather than a JRE, with the <code>jdk.compiler</code> module.
+ */
+public final class JavacParserBackend implements ParserBackend {
+
+  // the oldest source version accepted by the supported JDKs
+  private static final int MIN_SOURCE_VERSION = 8;
+  private static final Pattern JAVA_VERSION = Pattern.compile("JAVA_(?:1_)?(\\d+)(_PREVIEW)?");
+  private static final Pattern MODULE_IMPORT = Pattern.compile("\\bmodule\\b");
+
+  private final JavaCompiler compiler;
+  private final List<String> options;
+  // creating a file manager for each file would take about a third of the time to parse it, but
+  // they aren't safe to share between threads, so each parse borrows an idle one
+  private final Queue<StandardJavaFileManager> fileManagers = new ConcurrentLinkedQueue<>();
+  private volatile boolean closed;
+
+  /**
+   * Create a new backend.
+   *
+   * @param languageLevel the language level of the sources; the running JDK's own version is used
+   *        if it's newer than the JDK, older than Java 8, or not a specific version
+   * @throws IllegalStateException if the running Java has no compiler
+   */
+  public JavacParserBackend(final LanguageLevel languageLevel) {
+    this.compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new IllegalStateException(
+          "The javac parser needs a JDK, but none was found at " + System.getProperty("java.home"));
+    }
+    this.options = options(languageLevel, Runtime.version().feature());
+  }
+
+  static List<String> options(LanguageLevel languageLevel, int currentVersion) {
+    List<String> options = new ArrayList<>(Arrays.asList("-proc:none", "-Xlint:-options"));
+    Matcher m = JAVA_VERSION.matcher(languageLevel.name());
+    if (m.matches()) {
+      int version = Integer.parseInt(m.group(1));
+      if (m.group(2) != null && version == currentVersion) {
+        options.add("--enable-preview");
+        options.addAll(Arrays.asList("-source", String.valueOf(version)));
+      } else if (m.group(2) == null && version >= MIN_SOURCE_VERSION && version <= currentVersion) {
+        options.addAll(Arrays.asList("-source", String.valueOf(version)));
+      }
+    }
+    return options;
+  }
+
+  @Override
+  public ParsedSource parse(final Path path, final String source) throws ImpSortException {
+    StandardJavaFileManager fileManager = fileManagers.poll();
+    if (fileManager == null) {
+      fileManager = compiler.getStandardFileManager(null, Locale.ROOT, null);
+    }
+    try {
+      return parse(path, source, fileManager);
+    } finally {
+      fileManagers.add(fileManager);
+      // a parse which outlives the backend closes the file managers itself
+      if (closed) {
+        closeIdleFileManagers();
+      }
+    }
+  }
+
+  private ParsedSource parse(Path path, String source, StandardJavaFileManager fileManager)
+      throws ImpSortException {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    JavaFileObject file = new SimpleJavaFileObject(path.toUri(), JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return source;
+      }
+    };
+    JavacTask task =
+        (JavacTask) compiler.getTask(null, fileManager, diagnostics, options, null, List.of(file));
+    Iterator<? extends CompilationUnitTree> units;
+    try {
+      units = task.parse().iterator();
+    } catch (IOException e) {
+      ImpSortException ex = new ImpSortException(path, Reason.UNABLE_TO_PARSE);
+      ex.initCause(e);
+      throw ex;
+    }
+    if (!units.hasNext()) {
+      throw new ImpSortException(path, Reason.UNABLE_TO_PARSE);
+    }
+    return new Parse(source, units.next(), Trees.instance(task).getSourcePositions(),
+        diagnostics.getDiagnostics()).toParsedSource();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    closeIdleFileManagers();
+  }
+
+  private void closeIdleFileManagers() {
+    for (StandardJavaFileManager fileManager; (fileManager = fileManagers.poll()) != null;) {
+      try {
+        fileManager.close();
+      } catch (IOException e) {
+        // nothing was written through it, so there's nothing left to lose
+      }
+    }
+  }
+
+  /**
+   * The state of converting one javac syntax tree.
+   */
+  private static final class Parse {
+
+    private final String source;
+    private final CompilationUnitTree unit;
+    private final SourcePositions positions;
+    private final LineIndex lines;
+    private final List<Decl> decls = new ArrayList<>();
+    private final List<Decl> types = new ArrayList<>();
+    private final List<ParseProblem> problems = new ArrayList<>();
+    private final List<ParseProblem> problemsAbove = new ArrayList<>();
+    private Decl packageDecl;
+
+    private Parse(String source, CompilationUnitTree unit, SourcePositions positions,
+        List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+      this.source = source;
+      this.unit = unit;
+      this.positions = positions;
+      this.lines = new LineIndex(source);
+      PackageTree pkg = unit.getPackage();
+      if (pkg != null) {
+        // as in JavaParser, comments between a declaration's annotations and the rest of it are
+        // left for the enclosing node
+        Tree content = pkg.getAnnotations().isEmpty() ? pkg : pkg.getPackageName();
+        packageDecl = decl(pkg, start(content), pkg.getPackageName());
+        decls.add(packageDecl);
+      }
+      for (ImportTree imp : unit.getImports()) {
+        Decl decl = decl(imp, start(imp), imp.getQualifiedIdentifier());
+        String keywords =
+            source.substring((int) decl.start, (int) start(imp.getQualifiedIdentifier()));
+        if (MODULE_IMPORT.matcher(keywords).find()) {
+          addProblem(decl.start, "module imports are not supported");
+        }
+        decls.add(decl);
+      }
+      for (Tree type : unit.getTypeDecls()) {
+        // some releases also list the imports which follow a stray semicolon as types
+        if (type.getKind() != Tree.Kind.EMPTY_STATEMENT && !(type instanceof ImportTree)) {
+          Decl decl = decl(type, start(type), null);
+          decls.add(decl);
+          types.add(decl);
+        }
+      }
+      for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+        if (d.getKind() == Diagnostic.Kind.ERROR) {
+          addProblem(d.getPosition(), d.getMessage(Locale.ROOT));
+        }
+      }
+    }
+
+    private Decl decl(Tree tree, long contentStart, Tree name) {
+      long start = start(tree);
+      long end = end(tree);
+      return new Decl(tree, start, end, contentStart, lines.line(start), lines.line(end - 1),
+          name == null ? -1 : lines.line(start(name)));
+    }
+
+    private long start(Tree tree) {
+      return positions.getStartPosition(unit, tree);
+    }
+
+    private long end(Tree tree) {
+      return positions.getEndPosition(unit, tree);
+    }
+
+    private void addProblem(long position, String message) {
+      ParseProblem problem = new ParseProblem(message,
+          position == Diagnostic.NOPOS ? null : lines.position(position), null);
+      problems.add(problem);
+      // in case of no top level declaration per definition all problems are above
+      if (types.isEmpty() || position == Diagnostic.NOPOS || position < types.get(0).start) {
+        problemsAbove.add(problem);
+      }
+    }
+
+    private ParsedSource toParsedSource() {
+      List<Comment> comments = new ArrayList<>();
+      scan(0, source.length(), comments, null);
+      List<Comment> orphans = attachComments(comments);
+      List<ImportStatement> imports = new ArrayList<>();
+      for (Decl decl : decls) {
+        if (decl.tree instanceof ImportTree) {
+          ImportTree imp = (ImportTree) decl.tree;
+          imports.add(new ImportStatement(lines.position(decl.start), lines.position(decl.end - 1),
+              imp.isStatic(), imp.getQualifiedIdentifier().toString(),
+              decl.comment == null ? null : toSourceComment(decl.comment)));
+        }
+      }
+      SourcePosition headerEnd =
+          packageDecl == null ? new SourcePosition(1, 1) : lines.position(packageDecl.end - 1);
+      String packageName =
+          packageDecl == null ? null : unit.getPackage().getPackageName().toString();
+      return new ParsedSource(headerEnd, packageName, imports,
+          orphans.stream().map(this::toSourceComment).collect(Collectors.toList()), problems,
+          problemsAbove, () -> tokensInUse(comments));
+    }
+
+    private SourceComment toSourceComment(Comment comment) {
+      return new SourceComment(lines.position(comment.start), lines.position(comment.end - 1),
+          source, comment.start, comment.end);
+    }
+
+    /**
+     * Attach the comments outside of any declaration to the declarations, in the same way as
+     * JavaParser, and return those left as orphans.
+     */
+    private List<Comment> attachComments(List<Comment> comments) {
+      List<Comment> remaining = new ArrayList<>();
+      Iterator<Decl> declIter = decls.iterator();
+      Decl decl = declIter.hasNext() ? declIter.next() : null;
+      for (Comment comment : comments) {
+        while (decl != null && decl.end <= comment.start) {
+          decl = declIter.hasNext() ? declIter.next() : null;
+        }
+        if (decl == null || comment.start < decl.contentStart || comment.end > decl.end) {
+          remaining.add(comment);
+        }
+      }
+      // the first comment in a file with a package declaration belongs to the whole file
+      if (packageDecl != null && !comments.isEmpty() && comments.get(0).start < packageDecl.start) {
+        remaining.remove(comments.get(0));
+      }
+
+      // a line comment belongs to each declaration ending on its line, or else to the name in it
+      Map<Integer, List<Decl>> byEndLine = new HashMap<>();
+      for (Decl d : decls) {
+        byEndLine.computeIfAbsent(d.endLine, k -> new ArrayList<>(1)).add(d);
+      }
+      Set<Comment> attributed = new HashSet<>();
+      for (Comment comment : remaining) {
+        if (comment.kind != CommentKind.LINE) {
+          continue;
+        }
+        for (Decl d : byEndLine.getOrDefault(comment.line, Collections.emptyList())) {
+          if (d.line == comment.line && d.comment == null) {
+            d.comment = comment;
+            attributed.add(comment);
+          } else if (d.nameLine == comment.line) {
+            attributed.add(comment);
+          }
+        }
+      }
+
+      // other comments belong to the next declaration, if there's no blank line before it
+      List<Comment> orphans = new ArrayList<>();
+      Comment previous = null;
+      int next = 0;
+      for (Comment comment : remaining) {
+        if (attributed.contains(comment)) {
+          continue;
+        }
+        for (; next < decls.size() && decls.get(next).start < comment.start; next++) {
+          previous = attach(previous, decls.get(next));
+        }
+        if (previous != null) {
+          orphans.add(previous);
+        }
+        previous = comment;
+      }
+      for (; next < decls.size(); next++) {
+        previous = attach(previous, decls.get(next));
+      }
+      if (previous != null) {
+        orphans.add(previous);
+      }
+      return orphans;
+    }
+
+    // attach the previous comment, if any, to the declaration, and return the comment still pending
+    private static Comment attach(Comment previous, Decl decl) {
+      if (previous != null && decl.comment == null && decl.line <= previous.endLine + 1) {
+        decl.comment = previous;
+        return null;
+      }
+      return previous;
+    }
+
+    private Set<String> tokensInUse(List<Comment> comments) {
+      List<String> words = new ArrayList<>();
+      if (packageDecl != null) {
+        for (Tree annotation : unit.getPackage().getAnnotations()) {
+          scan((int) start(annotation), (int) end(annotation), null, words);
+        }
+      }
+      for (Decl type : types) {
+        scan((int) type.start, (int) type.end, null, words);
+      }
+      Stream<String> typesInJavadocs = comments.stream().filter(c -> c.kind == CommentKind.JAVADOC)
+          .map(c -> new TraditionalJavadocComment(source.substring(c.start + 3, c.end - 2)).parse())
+          .flatMap(UsedTokens::inJavadoc);
+      return UsedTokens.collect(Stream.concat(words.stream(), typesInJavadocs));
+    }
+
+    /**
+     * Find the comments and the words (identifiers, keywords, and numbers) in part of the source,
+     * skipping over string and character literals.
+     */
+    private void scan(int from, int to, List<Comment> comments, List<String> words) {
+      int i = from;
+      while (i < to) {
+        char c = source.charAt(i);
+        char n = i + 1 < to ? source.charAt(i + 1) : 0;
+        int end;
+        if (c == '/' && n == '/') {
+          end = i + 2;
+          while (end < to && source.charAt(end) != '\n' && source.charAt(end) != '\r') {
+            end++;
+          }
+          addComment(comments, CommentKind.LINE, i, end);
+        } else if (c == '/' && n == '*') {
+          int close = source.indexOf("*/", i + 2);
+          end = close < 0 || close + 2 > to ? to : close + 2;
+          boolean javadoc = i + 2 < end - 2 && source.charAt(i + 2) == '*';
+          addComment(comments, javadoc ? CommentKind.JAVADOC : CommentKind.BLOCK, i, end);
+        } else if (c == '"' && source.startsWith("\"\"\"", i)) {
+          end = skipLiteral(i + 3, to, "\"\"\"");
+        } else if (c == '"' || c == '\'') {
+          end = skipLiteral(i + 1, to, String.valueOf(c));
+        } else if (Character.isJavaIdentifierPart(c)) {
+          end = i + 1;
+          while (end < to && Character.isJavaIdentifierPart(source.charAt(end))) {
+            end++;
+          }
+          if (words != null) {
+            words.add(source.substring(i, end));
+          }
+        } else {
+          end = i + 1;
+        }
+        i = end;
+      }
+    }
+
+    private void addComment(List<Comment> comments, CommentKind kind, int start, int end) {
+      if (comments != null) {
+        comments.add(new Comment(kind, start, end, lines.line(start), lines.line(end - 1)));
+      }
+    }
+
+    private int skipLiteral(int from, int to, String delimiter) {
+      int i = from;
+      while (i < to) {
+        char c = source.charAt(i);
+        if (c == '\\') {
+          i += 2;
+        } else if (source.startsWith(delimiter, i)) {
+          return i + delimiter.length();
+        } else if (delimiter.length() == 1 && (c == '\n' || c == '\r')) {
+          // an unterminated literal ends at the end of the line
+          return i;
+        } else {
+          i++;
+        }
+      }
+      return to;
+    }
+  }
+
+  /**
+   * A top level declaration: the package declaration, an import statement, or a type.
+   */
+  private static final class Decl {
+    private final Tree tree;
+    private final long start;
+    private final long end;
+    // the start of the part of the declaration which contains its own comments
+    private final long contentStart;
+    private final int line;
+    private final int endLine;
+    // the line on which the declared or imported name starts, if it's tracked
+    private final int nameLine;
+    private Comment comment;
+
+    private Decl(Tree tree, long start, long end, long contentStart, int line, int endLine,
+        int nameLine) {
+      this.tree = tree;
+      this.start = start;
+      this.end = end;
+      this.contentStart = contentStart;
+      this.line = line;
+      this.endLine = endLine;
+      this.nameLine = nameLine;
+    }
+  }
+
+  private enum CommentKind {
+    LINE, BLOCK, JAVADOC
+  }
+
+  private static final class Comment {
+    private final CommentKind kind;
+    private final int start;
+    private final int end;
+    private final int line;
+    private final int endLine;
+
+    private Comment(CommentKind kind, int start, int end, int line, int endLine) {
+      this.kind = kind;
+      this.start = start;
+      this.end = end;
+      this.line = line;
+      this.endLine = endLine;
+    }
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort;
+
+import java.util.Arrays;
+import net.revelc.code.impsort.ParsedSource.SourcePosition;
+
+/**
+ * Converts between offsets in the source and lines and columns, counting lines as JavaParser does.
+ */
+final class LineIndex {
+  private final int[] lineStarts;
+
+  LineIndex(String source) {
+    int[] starts = new int[16];
+    int count = 1;
+    for (int i = 0; i < source.length(); i++) {
+      char c = source.charAt(i);
+      if (c == '\r' && i + 1 < source.length() && source.charAt(i + 1) == '\n') {
+        i++;
+      }
+      if (c == '\r' || c == '\n') {
+        if (count == starts.length) {
+          starts = Arrays.copyOf(starts, count * 2);
+        }
+        starts[count++] = i + 1;
+      }
+    }
+    this.lineStarts = Arrays.copyOf(starts, count);
+  }
+
+  int line(long offset) {
+    int index = Arrays.binarySearch(lineStarts, (int) offset);
+    return index >= 0 ? index + 1 : -index - 1;
+  }
+
+  SourcePosition position(long offset) {
+    int line = line(offset);
+    return new SourcePosition(line, (int) offset - lineStarts[line - 1] + 1);
+  }
+
+  int offset(SourcePosition position) {
+    return lineStarts[position.getLine() - 1] + position.getColumn() - 1;
+  }
+}
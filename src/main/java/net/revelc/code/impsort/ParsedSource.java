@@ -0,0 +1,304 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The parts of a parsed Java source file which are needed to sort its imports, independent of the
+ * {@link ParserBackend} which parsed it. SourcePositions follow JavaParser's conventions: lines and
+ * columns start at 1, a tab is one column, and an element's end is the position of its last
+ * character.
+ */
+public final class ParsedSource {
+
+  /**
+   * A line and column in the file.
+   */
+  public static final class SourcePosition implements Comparable<SourcePosition> {
+    private final int line;
+    private final int column;
+
+    public SourcePosition(int line, int column) {
+      this.line = line;
+      this.column = column;
+    }
+
+    public int getLine() {
+      return line;
+    }
+
+    public int getColumn() {
+      return column;
+    }
+
+    public boolean isBefore(SourcePosition other) {
+      return compareTo(other) < 0;
+    }
+
+    public boolean isAfter(SourcePosition other) {
+      return compareTo(other) > 0;
+    }
+
+    @Override
+    public int compareTo(SourcePosition other) {
+      int byLine = Integer.compare(line, other.line);
+      return byLine != 0 ? byLine : Integer.compare(column, other.column);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof SourcePosition)) {
+        return false;
+      }
+      SourcePosition other = (SourcePosition) obj;
+      return line == other.line && column == other.column;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(line, column);
+    }
+
+    @Override
+    public String toString() {
+      return "(line " + line + ",col " + column + ")";
+    }
+  }
+
+  /**
+   * A problem found while parsing the file.
+   */
+  public static final class ParseProblem {
+    private final String message;
+    private final Optional<SourcePosition> position;
+    private final Optional<Throwable> cause;
+
+    /**
+     * Create a new problem.
+     *
+     * @param message the description of the problem
+     * @param position where the problem is in the file, or null if it isn't known
+     * @param cause the exception which caused the problem, or null if there isn't one
+     */
+    public ParseProblem(String message, SourcePosition position, Throwable cause) {
+      this.message = message;
+      this.position = Optional.ofNullable(position);
+      this.cause = Optional.ofNullable(cause);
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    public Optional<SourcePosition> getPosition() {
+      return position;
+    }
+
+    public Optional<Throwable> getCause() {
+      return cause;
+    }
+
+    /**
+     * The description of the problem, preceded by its position, if it's known.
+     */
+    public String getVerboseMessage() {
+      return position.map(p -> p + " " + message).orElse(message);
+    }
+
+    @Override
+    public String toString() {
+      return getVerboseMessage();
+    }
+  }
+
+  /**
+   * A comment or import statement, and where it is in the file.
+   */
+  public abstract static class Element {
+    private final SourcePosition begin;
+    private final SourcePosition end;
+
+    Element(SourcePosition begin, SourcePosition end) {
+      this.begin = begin;
+      this.end = end;
+    }
+
+    public SourcePosition getBegin() {
+      return begin;
+    }
+
+    public SourcePosition getEnd() {
+      return end;
+    }
+  }
+
+  /**
+   * A comment in the file, which refers to its text in the source, rather than copying it.
+   */
+  public static final class SourceComment extends Element {
+    private final String source;
+    private final int startOffset;
+    private final int endOffset;
+
+    /**
+     * Create a new comment.
+     *
+     * @param begin the position of the comment's first character
+     * @param end the position of the comment's last character
+     * @param source the source the file was parsed from
+     * @param startOffset the offset of the comment's first character in the source
+     * @param endOffset the offset after the comment's last character in the source
+     */
+    public SourceComment(SourcePosition begin, SourcePosition end, String source, int startOffset,
+        int endOffset) {
+      super(begin, end);
+      this.source = source;
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+    }
+
+    String getSource() {
+      return source;
+    }
+
+    int getStartOffset() {
+      return startOffset;
+    }
+
+    int getEndOffset() {
+      return endOffset;
+    }
+
+    /**
+     * The comment, as it is written in the source.
+     */
+    public String getText() {
+      return source.substring(startOffset, endOffset);
+    }
+
+    @Override
+    public String toString() {
+      return getText();
+    }
+  }
+
+  /**
+   * An import statement in the file.
+   */
+  public static final class ImportStatement extends Element {
+    private final boolean isStatic;
+    private final String name;
+    private final Optional<SourceComment> comment;
+
+    /**
+     * Create a new import statement.
+     *
+     * @param begin the position of the <code>import</code> keyword
+     * @param end the position of the semicolon ending the statement
+     * @param isStatic whether this is a static import
+     * @param name the imported name, ending in <code>.*</code> for an on-demand import
+     * @param comment the comment attached to the statement, either immediately before it, or on the
+     *        same line after it; or null if there isn't one
+     */
+    public ImportStatement(SourcePosition begin, SourcePosition end, boolean isStatic, String name,
+        SourceComment comment) {
+      super(begin, end);
+      this.isStatic = isStatic;
+      this.name = name;
+      this.comment = Optional.ofNullable(comment);
+    }
+
+    public boolean isStatic() {
+      return isStatic;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Optional<SourceComment> getComment() {
+      return comment;
+    }
+  }
+
+  private final SourcePosition headerEnd;
+  private final Optional<String> packageName;
+  private final List<ImportStatement> imports;
+  private final List<SourceComment> orphanComments;
+  private final List<ParseProblem> problems;
+  private final List<ParseProblem> problemsAboveFirstTopLevelDeclaration;
+  private final Supplier<Set<String>> tokensInUse;
+
+  /**
+   * Create a new parsed file.
+   *
+   * @param headerEnd the end of the package declaration, or the start of the file if there isn't
+   *        one
+   * @param packageName the name of the file's package, or null if it's in the default package
+   * @param imports the import statements, in the order they appear in the file
+   * @param orphanComments the comments at the top level of the file which aren't attached to an
+   *        import statement, or to any other declaration
+   * @param problems the problems found while parsing the file
+   * @param problemsAboveFirstTopLevelDeclaration the problems found before the file's first type
+   *        declaration, or all of them if there isn't one
+   * @param tokensInUse computes the identifiers used outside of the import statements, including
+   *        those referenced from javadoc comments; it's only called when unused imports are removed
+   */
+  public ParsedSource(SourcePosition headerEnd, String packageName, List<ImportStatement> imports,
+      List<SourceComment> orphanComments, List<ParseProblem> problems,
+      List<ParseProblem> problemsAboveFirstTopLevelDeclaration, Supplier<Set<String>> tokensInUse) {
+    this.headerEnd = headerEnd;
+    this.packageName = Optional.ofNullable(packageName);
+    this.imports = imports;
+    this.orphanComments = orphanComments;
+    this.problems = problems;
+    this.problemsAboveFirstTopLevelDeclaration = problemsAboveFirstTopLevelDeclaration;
+    this.tokensInUse = tokensInUse;
+  }
+
+  public SourcePosition getHeaderEnd() {
+    return headerEnd;
+  }
+
+  public Optional<String> getPackageName() {
+    return packageName;
+  }
+
+  public List<ImportStatement> getImports() {
+    return imports;
+  }
+
+  public List<SourceComment> getOrphanComments() {
+    return orphanComments;
+  }
+
+  public List<ParseProblem> getProblems() {
+    return problems;
+  }
+
+  public List<ParseProblem> getProblemsAboveFirstTopLevelDeclaration() {
+    return problemsAboveFirstTopLevelDeclaration;
+  }
+
+  public Set<String> getTokensInUse() {
+    return tokensInUse.get();
+  }
+
+}
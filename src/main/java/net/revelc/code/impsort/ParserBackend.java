@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort;
+
+import java.nio.file.Path;
+import net.revelc.code.impsort.ex.ImpSortException;
+
+/**
+ * Parses the parts of a Java source file which are needed to sort its imports: the import
+ * statements, the comments around them, and (to find unused imports) the identifiers used in the
+ * rest of the file.
+ *
+ * <p>
+ * Implementations must be safe to use from several threads at once.
+ *
+ * @see JavaParserBackend
+ * @see JavacParserBackend
+ */
+public interface ParserBackend extends AutoCloseable {
+
+  /**
+   * Parse a source file.
+   *
+   * @param path the file, used in error messages
+   * @param source the contents of the file
+   * @return the parsed file, along with any problems found while parsing it
+   * @throws ImpSortException if the file can't be parsed at all
+   */
+  ParsedSource parse(Path path, String source) throws ImpSortException;
+
+  /**
+   * Release the resources held by this backend. Parses still running may finish, and release their
+   * own resources when they do.
+   */
+  @Override
+  default void close() {}
+
+}
@@ -29,6 +29,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class Result {
 
@@ -36,8 +37,8 @@ public class Result {
 
   private final Path path;
   private final Charset sourceEncoding;
-  private final String originalSection;
-  private final String newSection;
+  private final Supplier<String> newSectionSupplier;
+  private String newSection;
   private final Collection<Import> allImports;
   private final List<String> fileLines;
   private final int start;
@@ -47,15 +48,22 @@ public class Result {
   private List<Problem> reportableProblems;
 
   public static final Result EMPTY_FILE =
-      new Result(null, null, null, 0, 0, "", "", Collections.emptyList(), null, null, null);
-
+      new Result(null, null, null, 0, 0, true, () -> "", Collections.emptyList(), null, null, null);
+
+  /**
+   * The new import section is only rendered when it's needed, which is never for a file already
+   * known to be sorted.
+   *
+   * @param isSorted whether the file is known to be sorted, or null if that's not known yet
+   * @param newSection renders the new import section
+   */
   Result(Path path, Charset sourceEncoding, List<String> fileLines, int start, int stop,
-      String originalSection, String newSection, Collection<Import> allImports,
+      Boolean isSorted, Supplier<String> newSection, Collection<Import> allImports,
       LineEnding lineEnding, List<Problem> problems, List<Problem> reportableProblems) {
     this.path = path;
     this.sourceEncoding = sourceEncoding;
-    this.originalSection = originalSection;
-    this.newSection = newSection;
+    this.isSorted = isSorted;
+    this.newSectionSupplier = newSection;
     this.allImports = allImports;
     this.fileLines = fileLines;
     this.start = start;
@@ -67,11 +75,24 @@ public class Result {
 
   public boolean isSorted() {
     if (isSorted == null) {
-      isSorted = originalSection.contentEquals(newSection);
+      isSorted = getOriginalSection().contentEquals(getNewSection());
     }
     return isSorted;
   }
 
+  // the import section as it is in the file, including the blank lines around it
+  private String getOriginalSection() {
+    return String.join(lineEnding.getChars(), fileLines.subList(start, stop))
+        + lineEnding.getChars();
+  }
+
+  private String getNewSection() {
+    if (newSection == null) {
+      newSection = newSectionSupplier.get();
+    }
+    return newSection;
+  }
+
   public Collection<Import> getImports() {
     return Collections.unmodifiableCollection(allImports);
   }
@@ -88,7 +109,7 @@ public class Result {
       return null;
     }
     List<String> beforeImports = fileLines.subList(0, start);
-    List<String> importLines = Arrays.asList(newSection.split(lineEnding.getChars()));
+    List<String> importLines = Arrays.asList(getNewSection().split(lineEnding.getChars()));
     List<String> afterImports = fileLines.subList(stop, fileLines.size());
     List<String> allLines =
         new ArrayList<>(beforeImports.size() + importLines.size() + afterImports.size() + 1);
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort;
+
+import static com.github.javaparser.javadoc.JavadocBlockTag.Type.EXCEPTION;
+import static com.github.javaparser.javadoc.JavadocBlockTag.Type.THROWS;
+
+import com.github.javaparser.javadoc.Javadoc;
+import com.github.javaparser.javadoc.JavadocBlockTag;
+import com.github.javaparser.javadoc.description.JavadocDescription;
+import com.github.javaparser.javadoc.description.JavadocInlineTag;
+import com.github.javaparser.javadoc.description.JavadocSnippet;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Helpers shared by the {@link ParserBackend}s, for finding the identifiers a file uses.
+ */
+final class UsedTokens {
+
+  private static final Pattern NON_WORD = Pattern.compile("\\W+");
+
+  private UsedTokens() {}
+
+  /**
+   * Keep only the tokens which could be the name of an imported type or member.
+   */
+  static Set<String> collect(Stream<String> tokens) {
+    return tokens
+        .filter(t -> t != null && !t.isEmpty() && Character.isJavaIdentifierStart(t.charAt(0)))
+        .collect(Collectors.toSet());
+  }
+
+  // parse both main doc description and any block tags
+  static Stream<String> inJavadoc(Javadoc javadoc) {
+    // parse main doc description
+    Stream<String> stringsFromJavadocDescription =
+        Stream.of(javadoc.getDescription()).flatMap(UsedTokens::inJavadocDescription);
+    // grab tag names and parsed descriptions for block tags
+    Stream<String> stringsFromBlockTags = javadoc.getBlockTags().stream().flatMap(tag -> {
+      // only @throws and @exception have names who are importable; @param and others don't
+      EnumSet<JavadocBlockTag.Type> blockTagTypesWithImportableNames =
+          EnumSet.of(THROWS, EXCEPTION);
+      Stream<String> importableTagNames = blockTagTypesWithImportableNames.contains(tag.getType())
+          ? Stream.of(tag.getName()).filter(Optional::isPresent).map(Optional::orElseThrow)
+          : Stream.empty();
+      Stream<String> tagDescriptions =
+          Stream.of(tag.getContent()).flatMap(UsedTokens::inJavadocDescription);
+      return Stream.concat(importableTagNames, tagDescriptions);
+    });
+    return Stream.concat(stringsFromJavadocDescription, stringsFromBlockTags);
+  }
+
+  private static Stream<String> inJavadocDescription(JavadocDescription description) {
+    return description.getElements().stream().map(element -> {
+      if (element instanceof JavadocInlineTag) {
+        // inline tags like {@link Foo}
+        return ((JavadocInlineTag) element).getContent();
+      } else if (element instanceof JavadocSnippet) {
+        // snippets like @see Foo
+        return element.toText();
+      } else {
+        // try to handle unknown elements as best we can
+        return element.toText();
+      }
+    }).flatMap(s -> {
+      // split text descriptions into word tokens
+      return NON_WORD.splitAsStream(s);
+    });
+  }
+
+}
@@ -16,6 +16,8 @@ package net.revelc.code.impsort.ex;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
 
 public class ImpSortException extends IOException {
 
@@ -42,6 +44,7 @@ public class ImpSortException extends IOException {
   private static final long serialVersionUID = 1L;
   private final Path path;
   private final Reason reason;
+  private final List<String> details;
 
   /**
    * An exception processing a file.
@@ -50,9 +53,21 @@ public class ImpSortException extends IOException {
    * @param reason the reason for the exception
    */
   public ImpSortException(Path path, Reason reason) {
+    this(path, reason, Collections.emptyList());
+  }
+
+  /**
+   * An exception processing a file, with the diagnostics which explain it.
+   *
+   * @param path the path causing the exception
+   * @param reason the reason for the exception
+   * @param details the diagnostics, such as the parse problems found in the file
+   */
+  public ImpSortException(Path path, Reason reason, List<String> details) {
     super("file: " + path + "; reason: " + reason);
     this.path = path;
     this.reason = reason;
+    this.details = List.copyOf(details);
   }
 
   /**
@@ -73,4 +88,13 @@ public class ImpSortException extends IOException {
     return reason;
   }
 
+  /**
+   * The diagnostics which explain the exception, if any.
+   *
+   * @return the diagnostics, one per problem
+   */
+  public List<String> getDetails() {
+    return details;
+  }
+
 }
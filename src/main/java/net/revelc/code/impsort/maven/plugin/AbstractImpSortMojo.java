@@ -17,28 +17,38 @@ package net.revelc.code.impsort.maven.plugin;
 import com.github.javaparser.ParserConfiguration.LanguageLevel;
 import com.google.common.hash.Hashing;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.inject.Inject;
 import net.revelc.code.impsort.Grouper;
 import net.revelc.code.impsort.ImpSort;
 import net.revelc.code.impsort.LineEnding;
+import net.revelc.code.impsort.ParserBackend;
 import net.revelc.code.impsort.Result;
+import net.revelc.code.impsort.maven.plugin.AsyncFileReader.FileContents;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -46,14 +56,16 @@ import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.AbstractScanner;
+import org.codehaus.plexus.util.Scanner;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 abstract class AbstractImpSortMojo extends AbstractMojo {
 
   private static final String[] DEFAULT_INCLUDES = new String[] {"**/*.java"};
 
   /** The Constant CACHE_PROPERTIES_FILENAME. */
-  private static final String CACHE_PROPERTIES_FILENAME = "impsort-maven-cache.properties";
+  static final String CACHE_PROPERTIES_FILENAME = "impsort-maven-cache.properties";
 
   @Parameter(defaultValue = "${project}", readonly = true)
   protected MavenProject project;
@@ -61,6 +73,12 @@ abstract class AbstractImpSortMojo extends AbstractMojo {
   @Parameter(defaultValue = "${plugin}", readonly = true)
   protected PluginDescriptor plugin;
 
+  @Parameter(defaultValue = "${reactorProjects}", readonly = true)
+  protected List<MavenProject> reactorProjects;
+
+  @Inject
+  private BuildContext buildContext;
+
   @Parameter(defaultValue = "${project.build.sourceEncoding}", readonly = true)
   protected String sourceEncoding = StandardCharsets.UTF_8.name();
 
@@ -254,8 +272,252 @@ abstract class AbstractImpSortMojo extends AbstractMojo {
   @Parameter(property = "impsort.ignoreParseErrorsBelowImports", defaultValue = "false")
   private boolean ignoreParseErrorsBelowImports;
 
+  /**
+   * Limits the total size, in bytes, of the files being processed at the same time.
+   *
+   * <p>
+   * Each file in flight is held in memory several times over (raw bytes, decoded text, lines, and
+   * the parsed syntax tree), so this bounds the heap used by parallel processing, independently of
+   * the number of available cores. Threads wait for room in the budget before reading another file.
+   * With <code>threads</code>, the executions running at the same time with the same budget share
+   * it, so it bounds the whole build, including the files read ahead with
+   * <code>readQueueDepth</code>. Set to <code>0</code> to disable the limit.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.maxInFlightBytes", defaultValue = "268435456")
+  private long maxInFlightBytes;
+
+  /**
+   * Files at least this size, in bytes, are processed one at a time, while no other file is in
+   * flight. Only applies when <code>maxInFlightBytes</code> is enabled. Set to <code>0</code> to
+   * disable.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.largeFileThreshold", defaultValue = "8388608")
+  private long largeFileThreshold;
+
+  /**
+   * Enables the content-addressed cache.
+   *
+   * <p>
+   * Unlike the per-path hash cache in <code>cachedir</code>, entries in this cache are keyed by the
+   * hash of a file's contents together with a fingerprint of the plugin version and the
+   * configuration that affects sorting. Entries survive <code>mvn clean</code>, and are reused
+   * across checkouts, branches, renamed files, and (with <code>contentCacheUrl</code>) machines.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.contentCache", defaultValue = "false")
+  private boolean contentCache;
+
+  /**
+   * Local directory of the content-addressed cache. Only used when <code>contentCache</code> is
+   * enabled.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.contentCacheDirectory",
+      defaultValue = "${user.home}/.m2/impsort-cache")
+  private File contentCacheDirectory;
+
+  /**
+   * Base URL of a shared HTTP content-addressed cache. Entries are read with <code>GET</code> and
+   * written with <code>PUT</code> requests on <code>&lt;contentCacheUrl&gt;/&lt;key&gt;</code>. The
+   * local <code>contentCacheDirectory</code> is checked first. Only used when
+   * <code>contentCache</code> is enabled.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.contentCacheUrl")
+  private String contentCacheUrl;
+
+  /**
+   * Maximum number of entries kept in the local <code>contentCacheDirectory</code>. When exceeded
+   * at the end of a run, the least recently used entries are evicted. Since that lists the whole
+   * directory, it's checked at most once an hour, by whichever build sharing the directory finishes
+   * first, so the limit may be exceeded in the meantime. Set to <code>0</code> for no limit.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.contentCacheMaxEntries", defaultValue = "1000000")
+  private long contentCacheMaxEntries;
+
+  /**
+   * The number of files to read ahead with asynchronous I/O, while others are being processed.
+   *
+   * <p>
+   * On file systems where each read has a high latency, such as network volumes, this keeps many
+   * reads in flight at once, instead of one per processing thread. Files are processed in the order
+   * their reads complete. Set to <code>0</code> to read each file on the thread processing it.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.readQueueDepth", defaultValue = "0")
+  private int readQueueDepth;
+
+  /**
+   * The order in which files are processed. Valid values are:
+   * <ul>
+   * <li><b>"FOUND"</b> - Process each file as soon as it is found</li>
+   * <li><b>"LARGEST_FIRST"</b> - Find all files first, then process the largest ones first, so a
+   * few very large files (such as generated sources) don't finish long after all the others</li>
+   * </ul>
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.schedule", defaultValue = "FOUND")
+  private Schedule schedule;
+
+  /**
+   * The maximum time, in seconds, to spend parsing a single file. A file which takes longer is
+   * abandoned with a warning, and parsed again with only its package declaration and imports, since
+   * that is all that is needed to sort them. If that also takes too long, or
+   * <code>removeUnused</code> is enabled (which needs the whole file), the file fails the build. An
+   * abandoned parse can't be stopped, so it keeps running in the background, and keeps the memory
+   * it was given, until it's done. The time starts once the parse is running; if the threads for
+   * parsing are all taken by abandoned parses for as long, the file is abandoned too, with its own
+   * message. Set to <code>0</code> for no limit.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.fileTimeout", defaultValue = "0")
+  private int fileTimeout;
+
+  /**
+   * How often, in seconds, to log the files which have been processing for at least that long,
+   * along with what is being done to them, so a slow file doesn't make the build look hung. Set to
+   * <code>0</code> to disable.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.progressInterval", defaultValue = "30")
+  private int progressInterval;
+
+  /**
+   * The parser used to read the source files. Valid values are:
+   * <ul>
+   * <li><b>"JAVAPARSER"</b> - The bundled JavaParser library</li>
+   * <li><b>"JAVAC"</b> - The parser of the JDK running the build, which is faster, and accepts any
+   * syntax that JDK does, regardless of this plugin's version; it needs a JDK rather than a
+   * JRE</li>
+   * </ul>
+   *
+   * <p>
+   * Either way, the <code>compliance</code> level selects the version of the language to parse.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.parser", defaultValue = "JAVAPARSER")
+  private Parser parser;
+
+  /**
+   * What the per-path hash cache in <code>cachedir</code> hashes, to tell whether a file has
+   * changed since it was last sorted. Valid values are:
+   * <ul>
+   * <li><b>"FILE"</b> - The whole file</li>
+   * <li><b>"HEADER"</b> - Only the start of the file, through the first line after the imports
+   * (typically the start of the class), which is all that determines how the imports are sorted. A
+   * file whose header hasn't changed is skipped after reading only its header, however much the
+   * rest of it has changed, so parse errors in the rest of it aren't reported until its header
+   * changes</li>
+   * </ul>
+   *
+   * <p>
+   * <code>HEADER</code> only applies when <code>removeUnused</code> is disabled, and
+   * <code>lineEnding</code> isn't <code>KEEP</code>, since those depend on the whole file;
+   * otherwise whole files are hashed.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.cacheScope", defaultValue = "FILE")
+  private CacheScope cacheScope;
+
+  /**
+   * The number of threads to process files with, shared by all the executions of this plugin which
+   * run at the same time, such as those of the modules of a parallel build (<code>mvn -T</code>).
+   * The threads take a file from each running execution in turn, so each module gets an even share
+   * of them, and no more files are processed at once across the whole build. Set to <code>0</code>
+   * to process files in the JVM's common fork-join pool instead, where each execution competes for
+   * the threads on its own.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.threads", defaultValue = "0")
+  private int threads;
+
+  /**
+   * Process only one share of the files, such as on one of several CI nodes, given as
+   * <code>index/count</code>, where the index starts at 1 (for example, <code>2/4</code> for the
+   * second of four shares). Files are assigned to shares by a hash of their path relative to the
+   * project, so each file is in the same share on every node, and every file is in exactly one of
+   * them.
+   *
+   * <p>
+   * A sharded run only stores the hash cache entries of the files in its share, and doesn't prune
+   * the others, so the caches of all the shares can be combined with the <code>merge-cache</code>
+   * goal, and restored for later runs.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.shard")
+  private String shard;
+
+  /**
+   * Counts the files processed for one module, so an aggregated run can report on each.
+   */
+  static final class ModuleTally {
+    final MavenProject module;
+    final LongAdder alreadySorted = new LongAdder();
+    final LongAdder processed = new LongAdder();
+
+    ModuleTally(MavenProject module) {
+      this.module = module;
+    }
+  }
+
   abstract byte[] processResult(Path path, Result results) throws MojoFailureException;
 
+  /**
+   * Handle a file which is known from the cache to have unsorted imports, without parsing it.
+   *
+   * @param path the file
+   * @return true if the file was handled, or false if it must be parsed and processed
+   * @throws MojoFailureException if the file should fail the build
+   */
+  boolean processCachedUnsorted(Path path) throws MojoFailureException {
+    return false;
+  }
+
+  /**
+   * Handle a file which is known from the cache to be sorted, without parsing it. Files which are
+   * parsed are handled by {@link #processResult(Path, Result)} instead.
+   *
+   * @param path the file
+   * @throws MojoFailureException if the file should fail the build
+   */
+  void processCachedSorted(Path path) throws MojoFailureException {}
+
+  /**
+   * Whether to record a changed file as sorted without parsing it, such as when the whole tree is
+   * known to be sorted. If any file turns out not to be, the hash cache isn't stored.
+   *
+   * @param path the file
+   * @return true if the file should be assumed to be sorted
+   */
+  boolean assumeSorted(Path path) {
+    return false;
+  }
+
+  /**
+   * Whether this goal processes the sources of every module in the reactor in a single pass, rather
+   * than those of the current project only.
+   */
+  boolean isAggregator() {
+    return false;
+  }
+
   @Override
   public final void execute() throws MojoExecutionException, MojoFailureException {
     if (removeUnused && ignoreParseErrorsBelowImports) {
@@ -268,69 +530,95 @@ abstract class AbstractImpSortMojo extends AbstractMojo {
       getLog().info("Skipping execution of impsort-maven-plugin");
       return;
     }
+    Shard share = null;
+    if (shard != null && !shard.isBlank()) {
+      try {
+        share = Shard.parse(shard);
+      } catch (IllegalArgumentException e) {
+        fail(e.getMessage());
+      }
+      getLog().info("Processing shard " + share + " of the files");
+    }
 
     // find all matching files
-    Stream<File> files;
+    List<File> roots;
     if (directories != null && directories.length > 0) {
       // warn if a user-specified directory doesn't exist
-      files = Stream.of(directories).flatMap(d -> searchDir(d, true)).parallel();
+      roots =
+          Stream.of(directories).filter(d -> isSearchable(d, true)).collect(Collectors.toList());
+    } else if (isAggregator()) {
+      // the source directories of every module, without existence warnings
+      roots = reactorProjects.stream()
+          .flatMap(m -> Stream.of(m.getBuild().getSourceDirectory(),
+              m.getBuild().getTestSourceDirectory()))
+          .filter(Objects::nonNull).map(File::new).filter(d -> isSearchable(d, false)).distinct()
+          .collect(Collectors.toList());
     } else {
       // default to src/main/java and src/test/java, without existence warnings
-      files = Stream.of(sourceDirectory, testSourceDirectory).flatMap(d -> searchDir(d, false))
-          .parallel();
+      roots = Stream.of(sourceDirectory, testSourceDirectory).filter(d -> isSearchable(d, false))
+          .collect(Collectors.toList());
+    }
+    // in incremental builds (e.g. in an IDE), only look at sources which have changed
+    boolean incremental = buildContext.isIncremental();
+    Stream<Path> paths;
+    if (incremental) {
+      List<File> changed = roots.stream().filter(buildContext::hasDelta)
+          .flatMap(this::searchChanged).collect(Collectors.toList());
+      if (changed.isEmpty()) {
+        getLog().debug("No changed Java sources to process");
+        return;
+      }
+      paths = changed.stream().parallel().map(File::toPath);
+    } else {
+      roots.forEach(dir -> getLog().debug("Adding directory " + dir));
+      paths = new SourceWalker(getIncludes(), excludes, AbstractScanner.DEFAULTEXCLUDES,
+          (path, e) -> getLog().warn("Skipping " + path + ", which cannot be read: " + e))
+          .walk(roots.stream().map(File::toPath).collect(Collectors.toList()));
+    }
+    if (share != null) {
+      Shard included = share;
+      paths = paths.filter(path -> isInShard(included, path));
+    }
+    if (schedule == Schedule.LARGEST_FIRST) {
+      paths = SizeScheduler.largestFirst(paths);
+    }
+    HashCache hashCache = readFileHashCacheFile();
+    boolean cacheHeaders = false;
+    if (cacheScope == CacheScope.HEADER) {
+      cacheHeaders = !removeUnused && lineEnding != LineEnding.KEEP;
+      if (!cacheHeaders) {
+        getLog().warn("cacheScope=HEADER can't be used with removeUnused=true or lineEnding=KEEP,"
+            + " which depend on the whole file; hashing whole files instead");
+      }
     }
-    Stream<Path> paths = files.map(File::toPath);
-    Properties hashCache = readFileHashCacheFile();
-    AtomicBoolean hashCacheModified = new AtomicBoolean();
 
     // process all found files, and aggregate any failures
     Grouper grouper = new Grouper(groups, staticGroups, staticAfter, joinStaticWithNonStatic,
         breadthFirstComparator);
     Charset encoding = Charset.forName(sourceEncoding);
+    // the encoding to find the header region of each file with, or null to hash whole files
+    Charset headerEncoding = cacheHeaders ? encoding : null;
 
     LanguageLevel langLevel = getLanguageLevel(compliance, ignoreParseErrorsBelowImports);
     getLog().debug("Using compiler compliance level: " + langLevel);
+    getLog().debug("Using parser: " + parser);
+    ContentCache sharedCache = contentCache ? createContentCache() : null;
+    ParserBackend backend = parser.create(langLevel);
     ImpSort impSort = new ImpSort(encoding, grouper, removeUnused, treatSamePackageAsUnused,
-        lineEnding, langLevel, ignoreParseErrorsBelowImports);
-    AtomicLong numAlreadySorted = new AtomicLong(0);
-    AtomicLong numProcessed = new AtomicLong(0);
-
-    Function<Path, MojoFailureException> visitor = path -> {
-      try {
-        getLog().debug("Reading file " + path);
-
-        try {
-          byte[] buf = Files.readAllBytes(path);
-          String newHash = getHash(buf);
-          String key = path.toFile().getCanonicalPath()
-              .substring(project.getBasedir().getCanonicalPath().length());
-          String prvHash = hashCache.getProperty(key);
-          if (prvHash != null && prvHash.equals(newHash)) {
-            numAlreadySorted.getAndIncrement();
-            getLog().debug("Unchanged: " + path);
-          } else {
-            Result result = impSort.parseFile(path, buf);
-            result.getImports().forEach(imp -> getLog().debug("Found import: " + imp));
-            if (result.isSorted()) {
-              numAlreadySorted.getAndIncrement();
-            } else {
-              numProcessed.getAndIncrement();
-            }
-            buf = processResult(path, result);
-            if (buf != null) {
-              newHash = getHash(buf);
-            }
-            hashCache.setProperty(key, newHash);
-            hashCacheModified.set(true);
-          }
-        } catch (IOException e) {
-          fail("Error reading file " + path, e);
-        }
-        return null;
-      } catch (MojoFailureException e) {
-        return e;
-      }
-    };
+        lineEnding, backend, ignoreParseErrorsBelowImports);
+    String fingerprint = configFingerprint(langLevel);
+    Map<Path, ModuleTally> tallies = createModuleTallies(roots);
+    ModuleTally defaultTally = new ModuleTally(project);
+    InFlightBudget budget =
+        threads > 0 ? WorkerGovernor.shared().budget(maxInFlightBytes, largeFileThreshold)
+            : new InFlightBudget(maxInFlightBytes, largeFileThreshold);
+
+    FileWatchdog watchdog = new FileWatchdog(getLog(), progressInterval * 1000L);
+    Function<Path, ModuleTally> tallyOf =
+        path -> tallies.entrySet().stream().filter(e -> path.startsWith(e.getKey()))
+            .map(Map.Entry::getValue).findFirst().orElse(defaultTally);
+    FilePipeline pipeline = new FilePipeline(this, impSort, hashCache, headerEncoding, sharedCache,
+        fingerprint, budget, watchdog, tallyOf, fileTimeout * 1000L, removeUnused);
     Predicate<MojoFailureException> notNull = e -> e != null;
     BinaryOperator<MojoFailureException> agg = (e1, e2) -> {
       e1.addSuppressed(e2);
@@ -338,47 +626,215 @@ abstract class AbstractImpSortMojo extends AbstractMojo {
     };
 
     long startTime = System.nanoTime();
-    MojoFailureException failure = paths.map(visitor).filter(notNull).reduce(agg).orElse(null);
+    MojoFailureException failure;
+    try (watchdog; backend) {
+      if (readQueueDepth > 0) {
+        // unchanged files are found by hashing them on the producer threads, instead of reading
+        // them
+        AsyncFileReader reader =
+            new AsyncFileReader(readQueueDepth, budget, pipeline::isUnchangedOnDisk);
+        try (Stream<FileContents> reads = reader.read(paths)) {
+          failure = threads > 0 ? processShared(reads.iterator(), pipeline::visit)
+              : reads.map(pipeline::visit).filter(notNull).reduce(agg).orElse(null);
+        }
+      } else {
+        failure = threads > 0 ? processShared(paths.iterator(), pipeline::visit)
+            : paths.map(pipeline::visit).filter(notNull).reduce(agg).orElse(null);
+      }
+    }
     Duration totalTime = Duration.ofNanos(System.nanoTime() - startTime);
 
-    long total = numAlreadySorted.get() + numProcessed.get();
+    String cacheStats = "";
+    if (failure == null) {
+      pipeline.publishAssumedSorted();
+      // an incremental or sharded build doesn't see all the files, so it can't tell which are stale
+      long pruned = incremental || share != null ? 0 : pruneFileHashCache(hashCache, roots);
+      long evicted = sharedCache == null ? 0 : evictContentCache(sharedCache);
+      if (pruned > 0 || evicted > 0) {
+        cacheStats = String.format(", Cache Entries Pruned: %d, Evicted: %d", pruned, evicted);
+      }
+    }
+
+    Set<ModuleTally> modules = new LinkedHashSet<>(tallies.values());
+    modules.add(defaultTally);
+    long numAlreadySorted = modules.stream().mapToLong(t -> t.alreadySorted.sum()).sum();
+    long numProcessed = modules.stream().mapToLong(t -> t.processed.sum()).sum();
+    long total = numAlreadySorted + numProcessed;
     long minutes = totalTime.getSeconds() / 60;
     long seconds = totalTime.getSeconds() - minutes * 60;
     long millis = totalTime.getNano() / 1_000_000;
     getLog().info(String.format(
-        "Processed %d files in %02d:%02d.%03d (Already Sorted: %d, Needed Sorting: %d)", total,
-        minutes, seconds, millis, numAlreadySorted.get(), numProcessed.get()));
+        "Processed %d files in %02d:%02d.%03d (Already Sorted: %d, Needed Sorting: %d%s)", total,
+        minutes, seconds, millis, numAlreadySorted, numProcessed, cacheStats));
+    if (isAggregator()) {
+      for (ModuleTally tally : modules) {
+        long alreadySorted = tally.alreadySorted.sum();
+        long processed = tally.processed.sum();
+        if (alreadySorted + processed > 0) {
+          getLog().info(String.format("  %s: %d files (Already Sorted: %d, Needed Sorting: %d)",
+              tally.module.getArtifactId(), alreadySorted + processed, alreadySorted, processed));
+        }
+      }
+    }
+    if (sharedCache != null) {
+      getLog().info("Content cache hits: " + pipeline.getContentCacheHits());
+    }
+    long sectionCacheHits = grouper.getSectionCacheHits();
+    long sectionCacheMisses = grouper.getSectionCacheMisses();
+    if (sectionCacheHits + sectionCacheMisses > 0) {
+      getLog().info(String.format("Import section cache: %d hits, %d misses", sectionCacheHits,
+          sectionCacheMisses));
+    }
 
+    // stored even if the build fails, since it records the failures, as well as the sorted files,
+    // unless files were assumed to be sorted, which the failure shows can't be trusted
+    if (failure != null && pipeline.getAssumedSorted() > 0) {
+      getLog().warn("Not storing the hash cache, since some of the files assumed to be sorted"
+          + " may not be");
+    } else if (share != null) {
+      // only the entries of this shard, so the caches of all the shards can be merged
+      storeFileHashCache(hashCache.toProperties(share::includes));
+    } else if (hashCache.isModified()) {
+      storeFileHashCache(hashCache.toProperties());
+    }
     // check for failures during processing
     if (failure != null) {
       throw failure;
     }
-    if (hashCacheModified.get()) {
-      storeFileHashCache(hashCache);
+  }
+
+  /**
+   * Process files on the threads shared with the other executions running at the same time.
+   */
+  private <T> MojoFailureException processShared(Iterator<T> items,
+      Function<T, MojoFailureException> visitor) throws MojoFailureException {
+    getLog().debug("Processing files with " + threads + " shared threads");
+    try {
+      return WorkerGovernor.shared().run(threads, items, visitor);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail("Interrupted while processing files", e);
+      return null;
+    }
+  }
+
+  /**
+   * Tell the IDE running an incremental build, if any, that a file was written.
+   */
+  void refresh(Path path) {
+    buildContext.refresh(path.toFile());
+  }
+
+  String cacheKey(File file) throws IOException {
+    return file.getCanonicalPath().substring(project.getBasedir().getCanonicalPath().length());
+  }
+
+  private boolean isInShard(Shard share, Path path) {
+    try {
+      return share.includes(cacheKey(path.toFile()));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error resolving " + path, e);
+    }
+  }
+
+  /**
+   * Remove entries from the hash cache for files in the searched directories which weren't seen
+   * during this run, because they were deleted, renamed, or excluded.
+   */
+  private long pruneFileHashCache(HashCache hashCache, List<File> roots) {
+    List<String> prefixes = new ArrayList<>(roots.size());
+    for (File root : roots) {
+      try {
+        // only directories inside the project have well-defined keys
+        if (root.getCanonicalPath().startsWith(project.getBasedir().getCanonicalPath())) {
+          prefixes.add(cacheKey(root) + File.separator);
+        }
+      } catch (IOException e) {
+        getLog().warn("Not pruning hash cache entries for " + root + ": " + e.getMessage());
+      }
     }
+    int pruned = hashCache.pruneUntouched(prefixes);
+    if (pruned > 0) {
+      getLog().debug("Pruned " + pruned + " stale entries from the hash cache");
+    }
+    return pruned;
   }
 
-  private String getHash(byte[] buf) {
-    return Hashing.murmur3_128().hashBytes(buf).toString();
+  /**
+   * Map each root directory to the counters of the module it belongs to: the current project, or in
+   * an aggregated run, the module with the closest enclosing base directory.
+   */
+  private Map<Path, ModuleTally> createModuleTallies(List<File> roots) {
+    Map<MavenProject, ModuleTally> byModule = new HashMap<>();
+    Map<Path, ModuleTally> tallies = new LinkedHashMap<>();
+    for (File root : roots) {
+      MavenProject module = project;
+      if (isAggregator()) {
+        Path dir = root.toPath().toAbsolutePath();
+        Function<MavenProject, Path> basedir = m -> m.getBasedir().toPath().toAbsolutePath();
+        module = reactorProjects.stream().filter(m -> m.getBasedir() != null)
+            .filter(m -> dir.startsWith(basedir.apply(m)))
+            .max(Comparator.comparingInt(m -> basedir.apply(m).getNameCount())).orElse(project);
+      }
+      tallies.put(root.toPath(), byModule.computeIfAbsent(module, ModuleTally::new));
+    }
+    return tallies;
   }
 
-  private Stream<File> searchDir(File dir, boolean warnOnBadDir) {
+  private long evictContentCache(ContentCache cache) {
+    try {
+      return cache.evict(contentCacheMaxEntries);
+    } catch (IOException e) {
+      getLog().warn("Cannot evict content cache entries: " + e.getMessage());
+      return 0;
+    }
+  }
+
+  private ContentCache createContentCache() {
+    ContentCache local = new DirectoryContentCache(contentCacheDirectory.toPath());
+    if (contentCacheUrl == null || contentCacheUrl.isBlank()) {
+      return local;
+    }
+    return new TieredContentCache(local, new HttpContentCache(contentCacheUrl.trim()));
+  }
+
+  /**
+   * Compute a fingerprint of everything, other than a file's contents, which can affect the outcome
+   * of processing it.
+   */
+  private String configFingerprint(LanguageLevel langLevel) {
+    String eol = lineEnding.getChars() == null ? lineEnding.name() : lineEnding.getChars();
+    String config = String.join("\n", plugin == null ? "" : String.valueOf(plugin.getVersion()),
+        groups, staticGroups, String.valueOf(staticAfter), String.valueOf(joinStaticWithNonStatic),
+        String.valueOf(removeUnused), String.valueOf(treatSamePackageAsUnused),
+        String.valueOf(breadthFirstComparator), eol, langLevel.name(), parser.name(),
+        String.valueOf(ignoreParseErrorsBelowImports), sourceEncoding);
+    return Hashing.murmur3_128().hashString(config, StandardCharsets.UTF_8).toString();
+  }
+
+  private boolean isSearchable(File dir, boolean warnOnBadDir) {
     if (dir == null || !dir.exists() || !dir.isDirectory()) {
       if (warnOnBadDir && dir != null) {
         getLog().warn("Directory does not exist or is not a directory: " + dir);
       }
-      return Stream.empty();
-    }
-    getLog().debug("Adding directory " + dir);
-    DirectoryScanner ds = new DirectoryScanner();
-    ds.setBasedir(dir);
-    ds.setIncludes(includes != null && includes.length > 0 ? includes : DEFAULT_INCLUDES);
-    ds.setExcludes(excludes);
-    ds.addDefaultExcludes();
-    ds.setCaseSensitive(false);
-    ds.setFollowSymlinks(false);
-    ds.scan();
-    return Stream.of(ds.getIncludedFiles()).map(filename -> new File(dir, filename)).parallel();
+      return false;
+    }
+    return true;
+  }
+
+  private String[] getIncludes() {
+    return includes != null && includes.length > 0 ? includes : DEFAULT_INCLUDES;
+  }
+
+  private Stream<File> searchChanged(File dir) {
+    getLog().debug("Adding changed files in directory " + dir);
+    Scanner scanner = buildContext.newScanner(dir);
+    scanner.setIncludes(getIncludes());
+    scanner.setExcludes(excludes);
+    scanner.addDefaultExcludes();
+    scanner.scan();
+    return Stream.of(scanner.getIncludedFiles()).map(filename -> new File(dir, filename))
+        .filter(File::isFile);
   }
 
   protected void fail(String message) throws MojoFailureException {
@@ -429,15 +885,13 @@ abstract class AbstractImpSortMojo extends AbstractMojo {
   /**
    * Store file hash cache.
    *
-   * @param props the props
+   * @param props the entries of the hash cache to store
    */
   private void storeFileHashCache(Properties props) {
     Path cacheFile = Path.of(this.cachedir.getAbsolutePath(), CACHE_PROPERTIES_FILENAME);
-    try (StringWriter sw = new StringWriter()) {
-      props.store(sw, null);
+    try {
       getLog().debug("Writing sorted files to cache without timestamp:\n\n" + props);
-      Files.write(cacheFile, (Iterable<String>) sw.toString().lines().skip(1).sorted()::iterator,
-          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+      HashCache.store(props, cacheFile);
     } catch (IOException e) {
       getLog().warn("Cannot store file hash cache properties file", e);
     }
@@ -446,9 +900,9 @@ abstract class AbstractImpSortMojo extends AbstractMojo {
   /**
    * Read file hash cache file.
    *
-   * @return the properties
+   * @return the hash cache
    */
-  private Properties readFileHashCacheFile() {
+  private HashCache readFileHashCacheFile() {
     Properties props = new Properties();
     Log log = getLog();
     if (!this.cachedir.exists()) {
@@ -458,20 +912,20 @@ abstract class AbstractImpSortMojo extends AbstractMojo {
     } else if (!this.cachedir.isDirectory()) {
       log.warn("Something strange here as the '" + this.cachedir
           + "' supposedly cache directory is not a directory.");
-      return props;
+      return new HashCache(props);
     }
 
     File cacheFile = new File(this.cachedir, CACHE_PROPERTIES_FILENAME);
     if (!cacheFile.exists()) {
-      return props;
+      return new HashCache(props);
     }
 
-    try (InputStream stream = new FileInputStream(cacheFile)) {
-      props.load(stream);
+    try {
+      props = HashCache.load(cacheFile.toPath());
     } catch (IOException e) {
       log.warn("Cannot load file hash cache properties file", e);
     }
-    return props;
+    return new HashCache(props);
   }
 
 }
@@ -0,0 +1,470 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads files with asynchronous I/O, keeping up to a fixed number of reads in flight at once, and
+ * hands out their contents in the order the reads complete. On file systems with high latency, such
+ * as network volumes, this hides the latency of each read behind the others, rather than paying it
+ * once per file on each processing thread.
+ *
+ * <p>
+ * The paths are consumed in parallel by a small pool of producer threads, so walking the source
+ * directories, and checking whether each file needs to be read at all, isn't serialized on a single
+ * thread. Each producer waits for room in the queue (and in the {@link InFlightBudget}) before
+ * starting a read. A read's slot in the queue is freed when its contents are taken for processing;
+ * its share of the budget is freed by the caller, once processing is done. The budget may be shared
+ * with other executions, so the shares of the reads which are never handed to the caller, because
+ * the stream is closed before they are, are freed by this reader instead.
+ */
+final class AsyncFileReader {
+
+  // the number of completed reads handed to a processing task at once, when available
+  private static final int BATCH_SIZE = 16;
+  private static final Object DONE = new Object();
+
+  /**
+   * Checks whether a file can be handled without reading it, such as when it's unchanged since it
+   * was last processed.
+   */
+  @FunctionalInterface
+  interface Skip {
+    boolean test(Path path) throws IOException;
+  }
+
+  /**
+   * The outcome of reading one file.
+   */
+  static final class FileContents {
+    private final Path path;
+    private final byte[] bytes;
+    private final IOException error;
+    private final long reserved;
+    private final boolean skipped;
+
+    private FileContents(Path path, byte[] bytes, IOException error, long reserved,
+        boolean skipped) {
+      this.path = path;
+      this.bytes = bytes;
+      this.error = error;
+      this.reserved = reserved;
+      this.skipped = skipped;
+    }
+
+    private FileContents(Path path, byte[] bytes, IOException error, long reserved) {
+      this(path, bytes, error, reserved, false);
+    }
+
+    Path getPath() {
+      return path;
+    }
+
+    /**
+     * Whether the file wasn't read, because the {@link Skip} check found it can be handled without
+     * its contents.
+     */
+    boolean isSkipped() {
+      return skipped;
+    }
+
+    /**
+     * Get the contents of the file, reading it again if it changed size while it was being read.
+     *
+     * @return the contents of the file
+     * @throws IOException if the file could not be read
+     */
+    byte[] getBytes() throws IOException {
+      if (error != null) {
+        throw error;
+      }
+      return bytes != null ? bytes : Files.readAllBytes(path);
+    }
+
+    /**
+     * The share of the {@link InFlightBudget} reserved for this file, to be released once it has
+     * been processed.
+     */
+    long getReserved() {
+      return reserved;
+    }
+  }
+
+  private final Semaphore slots;
+  private final InFlightBudget budget;
+  private final Skip skip;
+  private final int producers;
+  private final BlockingQueue<Object> completed = new LinkedBlockingQueue<>();
+  private final AtomicInteger started = new AtomicInteger();
+  // taken from the completed reads, but not yet handed to the caller
+  private final Set<FileContents> pending = ConcurrentHashMap.newKeySet();
+  private volatile boolean closed;
+  private volatile int issued;
+  private volatile RuntimeException producerFailure;
+
+  /**
+   * Create a new reader.
+   *
+   * @param queueDepth the maximum number of files read, but not yet taken for processing
+   * @param budget the limit on the bytes in flight, acquired before each read is started
+   * @param skip checks each file before it's read, on the producer threads
+   */
+  AsyncFileReader(int queueDepth, InFlightBudget budget, Skip skip) {
+    this.slots = new Semaphore(queueDepth);
+    this.budget = budget;
+    this.skip = skip;
+    this.producers = Math.min(queueDepth, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Start reading the given files in the background.
+   *
+   * @param paths the files to read
+   * @return a parallel stream of the files' contents, in the order the reads complete; closing it
+   *         stops starting new reads
+   */
+  Stream<FileContents> read(Stream<Path> paths) {
+    ForkJoinPool pool = new ForkJoinPool(producers, p -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+      thread.setName("impsort-reader-" + thread.getPoolIndex());
+      return thread;
+    }, null, false);
+    Thread producer = new Thread(() -> produce(pool, paths), "impsort-reader");
+    producer.setDaemon(true);
+    producer.start();
+    return StreamSupport.stream(new CompletedReads(), true).onClose(() -> {
+      closed = true;
+      producer.interrupt();
+      discard();
+    });
+  }
+
+  private void complete(FileContents contents) {
+    completed.add(contents);
+    // a read still in flight when the stream was closed is never taken
+    if (closed) {
+      discard();
+    }
+  }
+
+  /**
+   * Free the budget reserved for the reads which won't be handed to the caller, now that the stream
+   * is closed.
+   */
+  private void discard() {
+    for (Object next; (next = completed.poll()) != null;) {
+      if (next != DONE) {
+        budget.release(((FileContents) next).getReserved());
+      }
+    }
+    for (FileContents contents : pending) {
+      if (pending.remove(contents)) {
+        budget.release(contents.getReserved());
+      }
+    }
+  }
+
+  /**
+   * Hand a read to the caller, unless the stream was closed since it was taken, and its share of
+   * the budget already freed.
+   */
+  private boolean hand(FileContents contents, Consumer<? super FileContents> action) {
+    if (!pending.remove(contents)) {
+      return false;
+    }
+    action.accept(contents);
+    return true;
+  }
+
+  /**
+   * Walk the paths in parallel on the pool, and wait until every producer has stopped, so that no
+   * read is started after the last one is counted.
+   */
+  private void produce(ForkJoinPool pool, Stream<Path> paths) {
+    try {
+      pool.submit(() -> paths.parallel().forEach(this::produce)).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      producerFailure = new IllegalStateException("Interrupted while starting file reads", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      // a failure on another thread of the pool is rethrown as a copy, caused by the original
+      while (cause.getCause() != null && cause.getCause().getClass() == cause.getClass()) {
+        cause = cause.getCause();
+      }
+      producerFailure = cause instanceof RuntimeException ? (RuntimeException) cause
+          : new IllegalStateException(cause);
+    } finally {
+      pool.shutdownNow();
+      boolean interrupted = Thread.interrupted();
+      while (!pool.isTerminated()) {
+        try {
+          pool.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      issued = started.get();
+      completed.add(DONE);
+    }
+  }
+
+  private void produce(Path path) {
+    try {
+      slots.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while starting file reads", e);
+    }
+    started.incrementAndGet();
+    // every read counted must be handed out, even if it couldn't be started
+    long reserved = 0;
+    IOException error;
+    try {
+      if (skip.test(path)) {
+        complete(new FileContents(path, null, null, 0, true));
+        return;
+      }
+      if (budget.isEnabled()) {
+        reserved = budget.acquire(Files.size(path));
+      }
+      start(path, reserved);
+      return;
+    } catch (IOException e) {
+      error = e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      error = new InterruptedIOException("Interrupted while waiting to read " + path);
+    } catch (RuntimeException e) {
+      error = new IOException(e);
+    }
+    complete(new FileContents(path, null, error, reserved));
+  }
+
+  private void start(Path path, long reserved) throws IOException {
+    AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+    long size;
+    try {
+      size = channel.size();
+      if (size > Integer.MAX_VALUE - 8) {
+        throw new IOException("File is too large to read: " + path);
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    channel.read(buffer, 0, null, new CompletionHandler<Integer, Void>() {
+      @Override
+      public void completed(Integer count, Void attachment) {
+        if (count >= 0 && buffer.hasRemaining()) {
+          channel.read(buffer, buffer.position(), null, this);
+          return;
+        }
+        byte[] bytes = null;
+        IOException error = null;
+        try (channel) {
+          // if the file changed size while being read, it is read again when it's processed
+          if (!buffer.hasRemaining() && channel.size() == size) {
+            bytes = buffer.array();
+          }
+        } catch (IOException e) {
+          error = e;
+        }
+        complete(new FileContents(path, bytes, error, reserved));
+      }
+
+      @Override
+      public void failed(Throwable cause, Void attachment) {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          cause.addSuppressed(e);
+        }
+        complete(new FileContents(path, null,
+            cause instanceof IOException ? (IOException) cause : new IOException(cause), reserved));
+      }
+    });
+  }
+
+  /**
+   * Hands out the reads as they complete, in small batches, so the stream's processing tasks can
+   * start on them while other reads are still in flight.
+   */
+  private final class CompletedReads implements Spliterator<FileContents> {
+
+    private int taken;
+    private boolean done;
+
+    private FileContents take(boolean wait) {
+      while (!done || taken < issued) {
+        Object next;
+        try {
+          next = wait ? awaitNext() : completed.poll();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while waiting for file reads", e);
+        }
+        if (next == null) {
+          return null;
+        } else if (next == DONE) {
+          done = true;
+          if (producerFailure != null) {
+            throw producerFailure;
+          }
+        } else {
+          taken++;
+          slots.release();
+          FileContents contents = (FileContents) next;
+          pending.add(contents);
+          if (closed) {
+            discard();
+          }
+          return contents;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Wait for the next completed read as a blocked task of the pool, which may then run other
+     * tasks, such as those holding batches split off by this thread. Otherwise, if those batches
+     * hold all of the budget, no more reads could be started, and the pool would wait forever. The
+     * same goes for the shared workers, whose other jobs may hold the budget.
+     */
+    private Object awaitNext() throws InterruptedException {
+      Object[] next = new Object[1];
+      ForkJoinPool.ManagedBlocker blocker = new ForkJoinPool.ManagedBlocker() {
+        @Override
+        public boolean block() throws InterruptedException {
+          if (next[0] == null) {
+            next[0] = completed.take();
+          }
+          return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+          return next[0] != null || (next[0] = completed.poll()) != null;
+        }
+      };
+      if (WorkerGovernor.isWorker()) {
+        WorkerGovernor.managedBlock(blocker);
+      } else {
+        ForkJoinPool.managedBlock(blocker);
+      }
+      return next[0];
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super FileContents> action) {
+      for (FileContents next; (next = take(true)) != null;) {
+        if (hand(next, action)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public Spliterator<FileContents> trySplit() {
+      FileContents first = take(true);
+      if (first == null) {
+        return null;
+      }
+      List<FileContents> batch = new ArrayList<>(BATCH_SIZE);
+      batch.add(first);
+      for (FileContents next; batch.size() < BATCH_SIZE && (next = take(false)) != null;) {
+        batch.add(next);
+      }
+      return new Batch(batch);
+    }
+
+    @Override
+    public long estimateSize() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+      return NONNULL;
+    }
+  }
+
+  /**
+   * Reads taken together for one processing task, which are still freed by {@link #discard()} if
+   * the stream is closed before the task gets to them.
+   */
+  private final class Batch implements Spliterator<FileContents> {
+
+    private final Spliterator<FileContents> reads;
+
+    private Batch(List<FileContents> reads) {
+      this.reads = reads.spliterator();
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super FileContents> action) {
+      boolean[] handed = new boolean[1];
+      while (!handed[0] && reads.tryAdvance(next -> handed[0] = hand(next, action))) {
+        // skip the reads discarded since they were taken
+      }
+      return handed[0];
+    }
+
+    @Override
+    public Spliterator<FileContents> trySplit() {
+      return null;
+    }
+
+    @Override
+    public long estimateSize() {
+      return reads.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+      return NONNULL;
+    }
+  }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+/**
+ * What the per-path hash cache hashes, to tell whether a file has changed since it was sorted.
+ */
+enum CacheScope {
+
+  /**
+   * The whole file, so any change to it is processed again.
+   */
+  FILE,
+
+  /**
+   * Only the header region, from the start of the file through the first line after its imports,
+   * which is all that determines how the imports sort when unused imports aren't being removed. A
+   * file whose header region is unchanged is skipped after reading only that region.
+   */
+  HEADER
+
+}
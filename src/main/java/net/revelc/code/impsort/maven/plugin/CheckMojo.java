@@ -33,4 +33,10 @@ public class CheckMojo extends AbstractImpSortMojo {
     return null;
   }
 
+  @Override
+  boolean processCachedUnsorted(Path path) throws MojoFailureException {
+    fail("Imports are not sorted in " + path);
+    return true;
+  }
+
 }
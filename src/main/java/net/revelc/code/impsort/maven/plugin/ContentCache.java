@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.io.IOException;
+
+/**
+ * A content-addressed store of processing outcomes, which can be shared across checkouts, branches,
+ * and machines. Keys are derived from a file's contents and the plugin configuration, so they never
+ * depend on where the file is located.
+ */
+public interface ContentCache {
+
+  /** Value recorded for content whose imports are already sorted. */
+  String SORTED = "sorted";
+
+  /** Value recorded for content whose imports are not sorted, when the sorted form is unknown. */
+  String UNSORTED = "unsorted";
+
+  /** Prefix of the value recorded for content that sorts to the content with the given hash. */
+  String SORTS_TO = "sorts-to ";
+
+  /**
+   * Thrown when a backend can't be reached at all, rather than failing for one entry, so that it
+   * can be left out for the rest of the run.
+   */
+  class UnavailableException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnavailableException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+
+  /**
+   * Look up the outcome recorded for a key.
+   *
+   * @param key the content key
+   * @return the recorded value, or null if there is none
+   * @throws IOException if the backend could not be read
+   */
+  String get(String key) throws IOException;
+
+  /**
+   * Record the outcome for a key.
+   *
+   * @param key the content key
+   * @param value the value to record
+   * @throws IOException if the backend could not be written
+   */
+  void put(String key, String value) throws IOException;
+
+  /**
+   * Remove the least recently used entries, until no more than the given number remain. Backends
+   * which can't enumerate their entries, or which are bounded by other means, do nothing.
+   *
+   * @param maxEntries the maximum number of entries to keep
+   * @return the number of entries removed
+   * @throws IOException if the backend could not be modified
+   */
+  default long evict(long maxEntries) throws IOException {
+    return 0;
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link ContentCache} stored in a local directory, with one small file per key. Files are spread
+ * across sub-directories named after the first two characters of their key. Entries are written to
+ * a temporary file and moved into place, so several builds can share the directory. The
+ * modification time of an entry is updated whenever it is read, so it can be used to evict the
+ * least recently used entries.
+ *
+ * <p>
+ * Since finding those entries means listing the whole directory, eviction only runs once per
+ * interval, across all the builds which share the directory, as recorded by the modification time
+ * of a marker file.
+ */
+class DirectoryContentCache implements ContentCache {
+
+  /** The default time between evictions. */
+  static final Duration EVICTION_INTERVAL = Duration.ofHours(1);
+
+  private static final String EVICTION_MARKER = ".last-eviction";
+
+  private final Path directory;
+  private final Duration evictionInterval;
+
+  DirectoryContentCache(Path directory) {
+    this(directory, EVICTION_INTERVAL);
+  }
+
+  DirectoryContentCache(Path directory, Duration evictionInterval) {
+    this.directory = directory;
+    this.evictionInterval = evictionInterval;
+  }
+
+  Path getDirectory() {
+    return directory;
+  }
+
+  Path entryPath(String key) {
+    return directory.resolve(key.substring(0, 2)).resolve(key);
+  }
+
+  @Override
+  public String get(String key) throws IOException {
+    Path entry = entryPath(key);
+    String value;
+    try {
+      value = new String(Files.readAllBytes(entry), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (NoSuchFileException e) {
+      // evicted by another build in the meantime; the value read is still valid
+    }
+    return value;
+  }
+
+  @Override
+  public void put(String key, String value) throws IOException {
+    Path entry = entryPath(key);
+    Files.createDirectories(entry.getParent());
+    Path tmp = Files.createTempFile(entry.getParent(), key, ".tmp");
+    try {
+      Files.write(tmp, value.getBytes(StandardCharsets.UTF_8));
+      try {
+        Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  @Override
+  public long evict(long maxEntries) throws IOException {
+    if (maxEntries <= 0 || !Files.isDirectory(directory) || !isEvictionDue()) {
+      return 0;
+    }
+    List<Map.Entry<Path, FileTime>> entries;
+    try (Stream<Path> files = Files.walk(directory, 2)) {
+      // entries are in the sub-directories, below the marker
+      entries = files.filter(f -> !f.getParent().equals(directory))
+          .filter(f -> !f.getFileName().toString().endsWith(".tmp")).filter(Files::isRegularFile)
+          .map(f -> {
+            try {
+              return Map.entry(f, Files.getLastModifiedTime(f));
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }).collect(Collectors.toList());
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    long excess = entries.size() - maxEntries;
+    if (excess <= 0) {
+      return 0;
+    }
+    entries.sort(Map.Entry.comparingByValue());
+    long evicted = 0;
+    for (Map.Entry<Path, FileTime> entry : entries.subList(0, (int) excess)) {
+      if (Files.deleteIfExists(entry.getKey())) {
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Check whether the last eviction was at least an interval ago, and if so, record that one is
+   * starting now.
+   */
+  private boolean isEvictionDue() throws IOException {
+    Path marker = directory.resolve(EVICTION_MARKER);
+    FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+    try {
+      FileTime last = Files.getLastModifiedTime(marker);
+      if (last.toMillis() + evictionInterval.toMillis() > now.toMillis()) {
+        return false;
+      }
+      Files.setLastModifiedTime(marker, now);
+    } catch (NoSuchFileException e) {
+      Files.write(marker, new byte[0]);
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,476 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import net.revelc.code.impsort.ImpSort;
+import net.revelc.code.impsort.Result;
+import net.revelc.code.impsort.ex.ImpSortException;
+import net.revelc.code.impsort.ex.ImpSortException.Reason;
+import net.revelc.code.impsort.maven.plugin.AbstractImpSortMojo.ModuleTally;
+import net.revelc.code.impsort.maven.plugin.AsyncFileReader.FileContents;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Processes each file of one execution: looks it up in the caches, parses it if it must, within the
+ * file timeout, and hands the result to the goal, before recording the outcome in the caches. Files
+ * read ahead and files read on demand go through the same steps.
+ */
+final class FilePipeline {
+
+  private static final int HASH_CHUNK_SIZE = 64 * 1024;
+  private static final ThreadLocal<ByteBuffer> HASH_BUFFERS =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(HASH_CHUNK_SIZE));
+
+  private final AbstractImpSortMojo goal;
+  private final Log log;
+  private final ImpSort impSort;
+  private final HashCache hashCache;
+  private final Charset headerEncoding;
+  private final ContentCache sharedCache;
+  private final String fingerprint;
+  private final InFlightBudget budget;
+  private final FileWatchdog watchdog;
+  private final Function<Path, ModuleTally> tallyOf;
+  private final long timeoutMillis;
+  private final boolean removeUnused;
+
+  // striped counters, so worker threads don't contend on a single value
+  private final LongAdder contentCacheHits = new LongAdder();
+  private final LongAdder assumedSorted = new LongAdder();
+  // published only once the files checked show that the others can be trusted
+  private final Queue<String> assumedSortedKeys = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Create the pipeline of one execution.
+   *
+   * @param goal the goal, which handles the outcome of each file
+   * @param impSort the configured sorter
+   * @param hashCache the hash cache of the project
+   * @param headerEncoding the encoding to find the header region of each file with, or null to hash
+   *        whole files
+   * @param sharedCache the content cache, or null if there isn't one
+   * @param fingerprint the fingerprint of the configuration, for the content cache keys
+   * @param budget the memory reserved for the files being read
+   * @param watchdog tracks the files being processed
+   * @param tallyOf the counters of the module each file belongs to
+   * @param timeoutMillis how long to parse each file for, or 0 for no limit
+   * @param removeUnused whether unused imports are removed, which rules out parsing only the
+   *        imports
+   */
+  FilePipeline(AbstractImpSortMojo goal, ImpSort impSort, HashCache hashCache,
+      Charset headerEncoding, ContentCache sharedCache, String fingerprint, InFlightBudget budget,
+      FileWatchdog watchdog, Function<Path, ModuleTally> tallyOf, long timeoutMillis,
+      boolean removeUnused) {
+    this.goal = goal;
+    this.log = goal.getLog();
+    this.impSort = impSort;
+    this.hashCache = hashCache;
+    this.headerEncoding = headerEncoding;
+    this.sharedCache = sharedCache;
+    this.fingerprint = fingerprint;
+    this.budget = budget;
+    this.watchdog = watchdog;
+    this.tallyOf = tallyOf;
+    this.timeoutMillis = timeoutMillis;
+    this.removeUnused = removeUnused;
+  }
+
+  long getContentCacheHits() {
+    return contentCacheHits.sum();
+  }
+
+  long getAssumedSorted() {
+    return assumedSorted.sum();
+  }
+
+  /**
+   * Record the files assumed to be sorted in the content cache, once the files checked show that
+   * they can be trusted.
+   */
+  void publishAssumedSorted() {
+    for (String key; (key = assumedSortedKeys.poll()) != null;) {
+      putContentCacheEntry(key, ContentCache.SORTED);
+    }
+  }
+
+  /**
+   * Process a file, reading it once it's known to have changed.
+   *
+   * @return the failure, or null if there wasn't one
+   */
+  MojoFailureException visit(Path path) {
+    log.debug("Reading file " + path);
+    try (FileWatchdog.Progress progress = watchdog.start(path)) {
+      // most files are unchanged in a warm run, so they're hashed before they're read in full
+      progress.phase("hashing");
+      if (isUnchangedOnDisk(path)) {
+        processUnchanged(path);
+        return null;
+      }
+      if (budget.isEnabled()) {
+        progress.phase("waiting for memory");
+        long reserved = budget.acquire(Files.size(path));
+        // held until an abandoned parse of the file is done too
+        progress.whenDone(() -> budget.release(reserved));
+      }
+      progress.phase("reading");
+      process(path, Files.readAllBytes(path), progress);
+      return null;
+    } catch (IOException e) {
+      return new MojoFailureException("Error reading file " + path, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new MojoFailureException("Interrupted while waiting to read file " + path, e);
+    } catch (MojoFailureException e) {
+      return e;
+    }
+  }
+
+  /**
+   * Process a file which was read ahead, or which was found to be unchanged instead.
+   *
+   * @return the failure, or null if there wasn't one
+   */
+  MojoFailureException visit(FileContents contents) {
+    Path path = contents.getPath();
+    try (FileWatchdog.Progress progress = watchdog.start(path)) {
+      if (contents.isSkipped()) {
+        processUnchanged(path);
+        return null;
+      }
+      progress.whenDone(() -> budget.release(contents.getReserved()));
+      process(path, contents.getBytes(), progress);
+      return null;
+    } catch (IOException e) {
+      return new MojoFailureException("Error reading file " + path, e);
+    } catch (MojoFailureException e) {
+      return e;
+    }
+  }
+
+  private void processUnchanged(Path path) throws MojoFailureException {
+    tallyOf.apply(path).alreadySorted.increment();
+    log.debug("Unchanged: " + path);
+    goal.processCachedSorted(path);
+  }
+
+  private void process(Path path, byte[] buf, FileWatchdog.Progress progress)
+      throws IOException, MojoFailureException {
+    progress.phase("hashing");
+    ModuleTally tally = tallyOf.apply(path);
+    String key = goal.cacheKey(path.toFile());
+    HashCode hash = lookUp(path, key, buf, tally);
+    if (hash == null) {
+      return;
+    }
+    progress.phase("parsing");
+    Result result = parse(path, key, hash, buf, progress);
+    result.getImports().forEach(imp -> log.debug("Found import: " + imp));
+    if (result.isSorted()) {
+      tally.alreadySorted.increment();
+    } else {
+      tally.processed.increment();
+    }
+    progress.phase(result.isSorted() ? "caching" : "sorting");
+    publish(path, key, hash, buf, result);
+  }
+
+  /**
+   * Handle a file from the hash cache or the content cache, if either knows its outcome.
+   *
+   * @return the hash of the contents, if the file must be parsed, or null if it was handled
+   */
+  private HashCode lookUp(Path path, String key, byte[] buf, ModuleTally tally)
+      throws IOException, MojoFailureException {
+    HashCode prvHash = hashCache.get(key);
+    if (headerEncoding != null && isHeaderUnchanged(key, prvHash, buf)) {
+      tally.alreadySorted.increment();
+      log.debug("Unchanged header: " + path);
+      goal.processCachedSorted(path);
+      return null;
+    }
+    HashCode hash = getHash(buf);
+    if (!hash.equals(prvHash) && goal.assumeSorted(path)) {
+      assumedSorted.increment();
+      tally.alreadySorted.increment();
+      log.debug("Assumed sorted: " + path);
+      putHash(key, buf, hash);
+      if (sharedCache != null) {
+        assumedSortedKeys.add(contentKey(hash));
+      }
+      return null;
+    }
+    HashCache.Failure prvFailure =
+        prvHash == null ? hashCache.getFailure(key, hash, fingerprint) : null;
+    String cached = sharedCache == null || hash.equals(prvHash) || prvFailure != null ? null
+        : getContentCacheEntry(contentKey(hash));
+    if (prvHash != null && prvHash.equals(hash)) {
+      tally.alreadySorted.increment();
+      log.debug("Unchanged: " + path);
+      goal.processCachedSorted(path);
+    } else if (prvFailure != null && processCachedFailure(path, prvFailure)) {
+      tally.processed.increment();
+    } else if (ContentCache.SORTED.equals(cached)) {
+      contentCacheHits.increment();
+      tally.alreadySorted.increment();
+      log.debug("Already sorted (content cache): " + path);
+      putHash(key, buf, hash);
+      goal.processCachedSorted(path);
+    } else if (cached != null && goal.processCachedUnsorted(path)) {
+      contentCacheHits.increment();
+      tally.processed.increment();
+    } else {
+      return hash;
+    }
+    return null;
+  }
+
+  /**
+   * Report a file which failed in a previous run, with the same contents and configuration, without
+   * parsing it again.
+   *
+   * @param path the file
+   * @param failure the recorded failure
+   * @return true if the file was handled, or false if it must be parsed and processed
+   * @throws IOException with the recorded reason, if the file couldn't be parsed
+   * @throws MojoFailureException if the file should fail the build
+   */
+  private boolean processCachedFailure(Path path, HashCache.Failure failure)
+      throws IOException, MojoFailureException {
+    String outcome = failure.getOutcome();
+    if (HashCache.UNSORTED.equals(outcome)) {
+      log.debug("Not sorted (hash cache): " + path);
+      return goal.processCachedUnsorted(path);
+    }
+    Optional<Reason> reason =
+        Stream.of(Reason.values()).filter(r -> r.name().equals(outcome)).findFirst();
+    if (reason.isEmpty()) {
+      return false;
+    }
+    log.debug("Failed previously (hash cache): " + path);
+    failure.getDetails().forEach(log::error);
+    throw new ImpSortException(path, reason.get(), failure.getDetails());
+  }
+
+  /**
+   * Parse a file, within the timeout, if there is one, and record a file which can't be parsed, so
+   * the next run fails the same way without parsing it again.
+   */
+  private Result parse(Path path, String key, HashCode hash, byte[] buf,
+      FileWatchdog.Progress progress) throws IOException, MojoFailureException {
+    try {
+      return timeoutMillis <= 0 ? impSort.parseFile(path, buf) : parse(path, buf, progress);
+    } catch (ImpSortException e) {
+      e.getDetails().forEach(log::error);
+      // the same contents fail the same way, until the configuration changes
+      hashCache.putFailure(key, hash, fingerprint, e.getReason().name(), e.getDetails());
+      throw e;
+    }
+  }
+
+  private Result parse(Path path, byte[] buf, FileWatchdog.Progress progress)
+      throws IOException, MojoFailureException {
+    try {
+      try {
+        return progress.callWithTimeout(() -> impSort.parseFile(path, buf), timeoutMillis);
+      } catch (TimeoutException e) {
+        if (removeUnused) {
+          throw new MojoFailureException("Abandoned parsing " + path + ", since " + e.getMessage()
+              + "; it can't be parsed partially, because removeUnused=true");
+        }
+        log.warn("Abandoned parsing " + path + ", since " + e.getMessage()
+            + "; parsing only its package declaration and imports instead");
+      }
+      try {
+        return progress.callWithTimeout(() -> impSort.parseFile(path, buf, true), timeoutMillis);
+      } catch (TimeoutException e) {
+        throw new MojoFailureException(
+            "Abandoned parsing the imports of " + path + ", since " + e.getMessage());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoFailureException("Interrupted while parsing file " + path, e);
+    } catch (IOException | MojoFailureException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Hand the result of parsing a file to the goal, and record the outcome in the caches.
+   */
+  private void publish(Path path, String key, HashCode hash, byte[] buf, Result result)
+      throws IOException, MojoFailureException {
+    String contentKey = sharedCache == null ? null : contentKey(hash);
+    byte[] sorted;
+    try {
+      sorted = goal.processResult(path, result);
+    } catch (MojoFailureException e) {
+      if (!result.isSorted()) {
+        // not sorted in place, so the next run can skip straight to the same outcome
+        putUnsorted(key, hash, contentKey);
+      }
+      throw e;
+    }
+    if (sorted == null && !result.isSorted()) {
+      // left as it was, such as when the sorted file was written elsewhere
+      putUnsorted(key, hash, contentKey);
+      return;
+    }
+    byte[] contents = buf;
+    HashCode contentsHash = hash;
+    if (sorted != null) {
+      contents = sorted;
+      contentsHash = getHash(sorted);
+      goal.refresh(path);
+    }
+    putHash(key, contents, contentsHash);
+    if (sharedCache != null) {
+      if (result.isSorted()) {
+        putContentCacheEntry(contentKey, ContentCache.SORTED);
+      } else if (sorted != null) {
+        putContentCacheEntry(contentKey, ContentCache.SORTS_TO + contentsHash);
+        putContentCacheEntry(contentKey(contentsHash), ContentCache.SORTED);
+      }
+    }
+  }
+
+  private void putUnsorted(String key, HashCode hash, String contentKey) {
+    hashCache.putFailure(key, hash, fingerprint, HashCache.UNSORTED, Collections.emptyList());
+    if (sharedCache != null) {
+      putContentCacheEntry(contentKey, ContentCache.UNSORTED);
+    }
+  }
+
+  private static HashCode getHash(byte[] buf) {
+    return Hashing.murmur3_128().hashBytes(buf);
+  }
+
+  /**
+   * Check whether a file starts with the same header region as when it was last sorted, for an
+   * entry which only covers that region.
+   */
+  private boolean isHeaderUnchanged(String key, HashCode prvHash, byte[] buf) {
+    int headerLength = prvHash == null ? -1 : hashCache.getHeaderLength(key);
+    return headerLength >= 0 && buf.length >= headerLength
+        && Hashing.murmur3_128().hashBytes(buf, 0, headerLength).equals(prvHash);
+  }
+
+  /**
+   * Check whether a file is unchanged since it was last sorted, by hashing it from disk, without
+   * reading it into memory. Only the header region is hashed, if that is all the cache covers.
+   */
+  boolean isUnchangedOnDisk(Path path) throws IOException {
+    String key = goal.cacheKey(path.toFile());
+    HashCode prvHash = hashCache.get(key);
+    if (prvHash == null) {
+      return false;
+    }
+    int headerLength = hashCache.getHeaderLength(key);
+    if (headerLength >= 0 && headerEncoding == null) {
+      return false;
+    }
+    return prvHash.equals(hashFile(path, headerLength));
+  }
+
+  /**
+   * Hash the start of a file, or all of it, in chunks, through a direct buffer reused by each
+   * thread, so that nothing the size of the file is allocated. This gives the same hash as
+   * {@link #getHash(byte[])} over the same bytes.
+   *
+   * @param path the file
+   * @param length the number of bytes to hash, or -1 for the whole file
+   * @return the hash, or null if the file is shorter than the given length
+   */
+  private static HashCode hashFile(Path path, int length) throws IOException {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    ByteBuffer chunk = HASH_BUFFERS.get();
+    long remaining = length < 0 ? Long.MAX_VALUE : length;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      while (remaining > 0) {
+        chunk.clear();
+        if (remaining < chunk.capacity()) {
+          chunk.limit((int) remaining);
+        }
+        int read = channel.read(chunk);
+        if (read < 0) {
+          break;
+        }
+        chunk.flip();
+        hasher.putBytes(chunk);
+        remaining -= read;
+      }
+    }
+    return length >= 0 && remaining > 0 ? null : hasher.hash();
+  }
+
+  /**
+   * Record the hash of a sorted file; or, when caching headers, of its header region, if the file
+   * continues past it.
+   */
+  private void putHash(String key, byte[] contents, HashCode hash) {
+    int headerLength = headerEncoding == null ? contents.length
+        : ImpSort.headerRegionLength(contents, headerEncoding);
+    if (headerLength < contents.length) {
+      hashCache.putHeader(key, Hashing.murmur3_128().hashBytes(contents, 0, headerLength),
+          headerLength);
+    } else {
+      hashCache.put(key, hash);
+    }
+  }
+
+  private String contentKey(HashCode contentHash) {
+    return Hashing.murmur3_128().newHasher().putString(fingerprint, StandardCharsets.UTF_8)
+        .putString(contentHash.toString(), StandardCharsets.UTF_8).hash().toString();
+  }
+
+  private String getContentCacheEntry(String key) {
+    try {
+      return sharedCache.get(key);
+    } catch (IOException e) {
+      log.warn("Cannot read content cache entry " + key + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private void putContentCacheEntry(String key, String value) {
+    try {
+      sharedCache.put(key, value);
+    } catch (IOException e) {
+      log.warn("Cannot write content cache entry " + key + ": " + e.getMessage());
+    }
+  }
+}
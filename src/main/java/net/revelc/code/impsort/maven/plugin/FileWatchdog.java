@@ -0,0 +1,270 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Keeps track of the files being processed, to report those which take a long time, and runs the
+ * steps which may take too long with a deadline.
+ *
+ * <p>
+ * A step run with a deadline runs on a separate thread, so the thread processing the file can give
+ * up on it. A parser can't be stopped safely, so an abandoned step keeps running in the background
+ * until it's done, but its result is ignored. The actions to run when a file is done, such as
+ * releasing the memory reserved for it, wait for its abandoned steps, and there are only so many
+ * threads for the steps, so abandoned steps can't pile up without bound.
+ */
+final class FileWatchdog implements AutoCloseable {
+
+  /**
+   * A file being processed. Closing it stops tracking the file, and runs its actions once its steps
+   * are done.
+   */
+  final class Progress implements AutoCloseable {
+    private final Path path;
+    private final long start = System.nanoTime();
+    private volatile String phase = "starting";
+    private final List<Runnable> whenDone = new ArrayList<>();
+    private int runningSteps;
+    private boolean closed;
+
+    private Progress(Path path) {
+      this.path = path;
+    }
+
+    void phase(String phase) {
+      this.phase = phase;
+    }
+
+    String getPhase() {
+      return phase;
+    }
+
+    long getElapsedMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Run an action when the file is done, and none of its steps are running any more, even those
+     * which were abandoned.
+     *
+     * @param action the action to run
+     */
+    synchronized void whenDone(Runnable action) {
+      whenDone.add(action);
+    }
+
+    /**
+     * Run a step, waiting for it no longer than the given time, counted from when it starts
+     * running. The wait for a thread to run the step on, which are all taken when too many
+     * abandoned steps are running, isn't counted against that time, but is bounded by the same time
+     * on its own.
+     *
+     * @param step the step to run
+     * @param timeoutMillis the maximum time to wait for a thread, and then for the step
+     * @return the result of the step
+     * @throws TimeoutException if the step didn't start or finish in time, and was abandoned; the
+     *         message tells which
+     * @throws Exception any exception thrown by the step
+     */
+    <T> T callWithTimeout(Callable<T> step, long timeoutMillis) throws Exception {
+      // whichever of the step and the caller giving up on it before it starts claims it first
+      AtomicBoolean claimed = new AtomicBoolean();
+      CountDownLatch running = new CountDownLatch(1);
+      synchronized (this) {
+        runningSteps++;
+      }
+      Future<T> future = deadlineRunner().submit(() -> {
+        if (!claimed.compareAndSet(false, true)) {
+          return null;
+        }
+        running.countDown();
+        try {
+          return step.call();
+        } finally {
+          stepDone();
+        }
+      });
+      try {
+        if (!running.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+          throw new TimeoutException(String.format(
+              "no thread was free to run it for %.1f s, while abandoned steps were still running",
+              timeoutMillis / 1000.0));
+        }
+        long start = System.nanoTime();
+        try {
+          return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          throw new TimeoutException(
+              String.format("it ran for %.1f s", (System.nanoTime() - start) / 1e9));
+        }
+      } catch (TimeoutException | InterruptedException e) {
+        if (claimed.compareAndSet(false, true)) {
+          stepDone();
+        }
+        future.cancel(true);
+        throw e;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+          throw (Exception) cause;
+        }
+        throw (Error) cause;
+      }
+    }
+
+    private void stepDone() {
+      List<Runnable> actions;
+      synchronized (this) {
+        runningSteps--;
+        actions = takeActionsIfDone();
+      }
+      actions.forEach(Runnable::run);
+    }
+
+    private List<Runnable> takeActionsIfDone() {
+      if (!closed || runningSteps > 0) {
+        return List.of();
+      }
+      List<Runnable> actions = new ArrayList<>(whenDone);
+      whenDone.clear();
+      return actions;
+    }
+
+    @Override
+    public void close() {
+      inProgress.remove(this);
+      List<Runnable> actions;
+      synchronized (this) {
+        closed = true;
+        actions = takeActionsIfDone();
+      }
+      actions.forEach(Runnable::run);
+    }
+  }
+
+  private final Log log;
+  private final long progressIntervalMillis;
+  private final Set<Progress> inProgress = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService reporter;
+  private final int maxSteps;
+  private ThreadPoolExecutor deadlineRunner;
+
+  /**
+   * Create a new watchdog.
+   *
+   * @param log the log to report long-running files to
+   * @param progressIntervalMillis how often to report the files which have been processing for at
+   *        least this long; zero or less disables the reports
+   */
+  FileWatchdog(Log log, long progressIntervalMillis) {
+    this(log, progressIntervalMillis, 2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Create a new watchdog.
+   *
+   * @param log the log to report long-running files to
+   * @param progressIntervalMillis how often to report the files which have been processing for at
+   *        least this long; zero or less disables the reports
+   * @param maxSteps the most steps to run with a deadline at the same time, including abandoned
+   *        steps
+   */
+  FileWatchdog(Log log, long progressIntervalMillis, int maxSteps) {
+    this.log = log;
+    this.progressIntervalMillis = progressIntervalMillis;
+    this.maxSteps = maxSteps;
+    if (progressIntervalMillis > 0) {
+      reporter = Executors.newSingleThreadScheduledExecutor(daemonThreads("impsort-watchdog"));
+      reporter.scheduleAtFixedRate(this::report, progressIntervalMillis, progressIntervalMillis,
+          TimeUnit.MILLISECONDS);
+    } else {
+      reporter = null;
+    }
+  }
+
+  private static ThreadFactory daemonThreads(String name) {
+    AtomicInteger count = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+
+  /**
+   * Start tracking a file.
+   *
+   * @param path the file
+   * @return the progress of the file, to be closed when it's done
+   */
+  Progress start(Path path) {
+    Progress progress = new Progress(path);
+    if (reporter != null) {
+      inProgress.add(progress);
+    }
+    return progress;
+  }
+
+  private void report() {
+    for (Progress progress : inProgress) {
+      long elapsed = progress.getElapsedMillis();
+      if (elapsed >= progressIntervalMillis) {
+        log.info(String.format("Still processing %s (%s, %.1f s)", progress.path, progress.phase,
+            elapsed / 1000.0));
+      }
+    }
+  }
+
+  private synchronized ThreadPoolExecutor deadlineRunner() {
+    if (deadlineRunner == null) {
+      deadlineRunner = new ThreadPoolExecutor(maxSteps, maxSteps, 30, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), daemonThreads("impsort-deadline"));
+      deadlineRunner.allowCoreThreadTimeOut(true);
+    }
+    return deadlineRunner;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (reporter != null) {
+      reporter.shutdownNow();
+    }
+    if (deadlineRunner != null) {
+      // abandoned steps are left to finish on their daemon threads
+      deadlineRunner.shutdown();
+    }
+  }
+
+}
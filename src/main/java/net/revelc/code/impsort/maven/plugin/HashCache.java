@@ -0,0 +1,328 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import com.google.common.hash.HashCode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * The per-path hash cache, mapping file paths relative to the project to the hash of their sorted
+ * contents. Keeps track of which entries were used during the current run, so that entries for
+ * files which no longer exist, or are no longer included, can be pruned before it is stored.
+ *
+ * <p>
+ * This is read and updated by every worker thread, so it is backed by a {@link ConcurrentHashMap}
+ * (lock-free reads) holding hashes in their binary form, rather than a synchronized
+ * {@link Properties} holding hex strings.
+ *
+ * <p>
+ * A file which failed, because it couldn't be parsed or (when checking) wasn't sorted, is recorded
+ * as a failure instead: the hash of its contents, the fingerprint of the configuration it failed
+ * with, and its outcome and diagnostics. As long as neither has changed, the failure can be
+ * reported again without reading the file a second time. These are stored as
+ * <code>hash|fingerprint|outcome|details</code>, with the details separated by the ASCII unit
+ * separator, so that older stored caches, with a plain hash per entry, can still be read.
+ *
+ * <p>
+ * When only the header region of a file determines how it sorts, its entry may hold the hash of
+ * just that region, along with the region's length in bytes, stored as <code>hash@length</code>.
+ */
+final class HashCache {
+
+  /**
+   * The outcome of a file which parsed, but which wasn't sorted when it was only being checked.
+   */
+  static final String UNSORTED = "UNSORTED";
+
+  private static final char FIELD_SEPARATOR = '|';
+  private static final char DETAIL_SEPARATOR = '\u001f';
+  private static final char HEADER_SEPARATOR = '@';
+
+  /**
+   * A recorded failure.
+   */
+  static final class Failure {
+    private final String outcome;
+    private final List<String> details;
+
+    private Failure(String outcome, List<String> details) {
+      this.outcome = outcome;
+      this.details = details;
+    }
+
+    /**
+     * The outcome, which is either {@link #UNSORTED} or the name of an
+     * {@link net.revelc.code.impsort.ex.ImpSortException.Reason}.
+     */
+    String getOutcome() {
+      return outcome;
+    }
+
+    List<String> getDetails() {
+      return details;
+    }
+  }
+
+  private static final class Entry {
+    private final HashCode hash;
+    private final int headerLength; // -1 unless only the header region was hashed
+    private final String fingerprint; // null unless this is a failure
+    private final Failure failure;
+    private volatile boolean touched;
+
+    private Entry(HashCode hash, int headerLength, String fingerprint, Failure failure,
+        boolean touched) {
+      this.hash = hash;
+      this.headerLength = headerLength;
+      this.fingerprint = fingerprint;
+      this.failure = failure;
+      this.touched = touched;
+    }
+
+    private static Entry parse(String value) {
+      String[] fields = value.split("\\" + FIELD_SEPARATOR, 4);
+      if (fields.length == 1) {
+        int at = value.indexOf(HEADER_SEPARATOR);
+        if (at >= 0) {
+          int headerLength = Integer.parseInt(value.substring(at + 1));
+          if (headerLength < 0) {
+            throw new IllegalArgumentException("Invalid header length: " + value);
+          }
+          return new Entry(HashCode.fromString(value.substring(0, at)), headerLength, null, null,
+              false);
+        }
+        return new Entry(HashCode.fromString(value), -1, null, null, false);
+      }
+      if (fields.length < 3 || fields[1].isEmpty() || fields[2].isEmpty()) {
+        throw new IllegalArgumentException("Invalid failure entry: " + value);
+      }
+      List<String> details = fields.length == 3 || fields[3].isEmpty() ? Collections.emptyList()
+          : List.of(fields[3].split(String.valueOf(DETAIL_SEPARATOR), -1));
+      return new Entry(HashCode.fromString(fields[0]), -1, fields[1],
+          new Failure(fields[2], details), false);
+    }
+
+    @Override
+    public String toString() {
+      if (failure == null) {
+        return headerLength < 0 ? hash.toString()
+            : hash.toString() + HEADER_SEPARATOR + headerLength;
+      }
+      return hash.toString() + FIELD_SEPARATOR + fingerprint + FIELD_SEPARATOR + failure.outcome
+          + FIELD_SEPARATOR + String.join(String.valueOf(DETAIL_SEPARATOR), failure.details);
+    }
+  }
+
+  private final ConcurrentHashMap<String, Entry> entries;
+  private volatile boolean modified;
+
+  /**
+   * Create a cache from stored entries. Entries whose value isn't a valid hash or failure are
+   * ignored.
+   *
+   * @param props the stored entries
+   */
+  HashCache(Properties props) {
+    this.entries = new ConcurrentHashMap<>(Math.max(16, props.size() * 4 / 3 + 1));
+    props.forEach((k, v) -> {
+      try {
+        entries.put((String) k, Entry.parse((String) v));
+      } catch (IllegalArgumentException e) {
+        modified = true; // drop it when stored
+      }
+    });
+  }
+
+  private Entry touch(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null && !entry.touched) {
+      entry.touched = true;
+    }
+    return entry;
+  }
+
+  /**
+   * Get the hash of the sorted contents of a file.
+   *
+   * @param key the file's key
+   * @return the hash, or null if there is none, or the file failed
+   */
+  HashCode get(String key) {
+    Entry entry = touch(key);
+    return entry == null || entry.failure != null ? null : entry.hash;
+  }
+
+  /**
+   * Get the length of the header region which the hash of a file covers.
+   *
+   * @param key the file's key
+   * @return the length in bytes, or -1 if the hash covers the whole file, or there is none
+   */
+  int getHeaderLength(String key) {
+    Entry entry = entries.get(key);
+    return entry == null || entry.failure != null ? -1 : entry.headerLength;
+  }
+
+  void put(String key, HashCode hash) {
+    putEntry(key, hash, -1);
+  }
+
+  /**
+   * Record the hash of the header region of a file, which determines how it sorts, rather than the
+   * hash of the whole file.
+   *
+   * @param key the file's key
+   * @param hash the hash of the header region
+   * @param headerLength the length of the header region in bytes
+   */
+  void putHeader(String key, HashCode hash, int headerLength) {
+    putEntry(key, hash, headerLength);
+  }
+
+  private void putEntry(String key, HashCode hash, int headerLength) {
+    Entry previous = entries.put(key, new Entry(hash, headerLength, null, null, true));
+    if (!modified && (previous == null || previous.failure != null
+        || previous.headerLength != headerLength || !previous.hash.equals(hash))) {
+      modified = true;
+    }
+  }
+
+  /**
+   * Get the failure recorded for a file, if it failed with the same contents and configuration.
+   *
+   * @param key the file's key
+   * @param hash the hash of the file's current contents
+   * @param fingerprint the fingerprint of the current configuration
+   * @return the failure, or null if there is none which still applies
+   */
+  Failure getFailure(String key, HashCode hash, String fingerprint) {
+    Entry entry = touch(key);
+    return entry == null || entry.failure == null || !entry.hash.equals(hash)
+        || !entry.fingerprint.equals(fingerprint) ? null : entry.failure;
+  }
+
+  /**
+   * Record a failure for a file.
+   *
+   * @param key the file's key
+   * @param hash the hash of the file's contents
+   * @param fingerprint the fingerprint of the configuration which the file failed with
+   * @param outcome {@link #UNSORTED}, or the name of the reason the file couldn't be processed
+   * @param details the diagnostics which explain the failure
+   */
+  void putFailure(String key, HashCode hash, String fingerprint, String outcome,
+      List<String> details) {
+    // the separators can't be escaped, so they are replaced in the (free-form) details
+    List<String> cleaned = details.stream().map(d -> d.replace(DETAIL_SEPARATOR, ' '))
+        .collect(Collectors.toUnmodifiableList());
+    entries.put(key, new Entry(hash, -1, fingerprint, new Failure(outcome, cleaned), true));
+    modified = true;
+  }
+
+  boolean isModified() {
+    return modified;
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Remove all entries which were not used during this run, and whose key starts with one of the
+   * given prefixes.
+   *
+   * @param prefixes the keys of the directories which were searched
+   * @return the number of entries removed
+   */
+  int pruneUntouched(Collection<String> prefixes) {
+    int pruned = 0;
+    for (Map.Entry<String, Entry> e : entries.entrySet()) {
+      String key = e.getKey();
+      if (!e.getValue().touched && prefixes.stream().anyMatch(key::startsWith)
+          && entries.remove(key, e.getValue())) {
+        pruned++;
+      }
+    }
+    if (pruned > 0) {
+      modified = true;
+    }
+    return pruned;
+  }
+
+  Properties toProperties() {
+    return toProperties(key -> true);
+  }
+
+  /**
+   * Get the entries whose key matches a filter, such as those of the files in one shard.
+   *
+   * @param keys the filter for the keys to include
+   * @return the matching entries, in their stored form
+   */
+  Properties toProperties(Predicate<String> keys) {
+    Properties props = new Properties();
+    entries.forEach((k, v) -> {
+      if (keys.test(k)) {
+        props.setProperty(k, v.toString());
+      }
+    });
+    return props;
+  }
+
+  /**
+   * Read stored entries from a file.
+   *
+   * @param file the file to read
+   * @return the stored entries
+   * @throws IOException if the file cannot be read
+   */
+  static Properties load(Path file) throws IOException {
+    Properties props = new Properties();
+    try (InputStream stream = Files.newInputStream(file)) {
+      props.load(stream);
+    }
+    return props;
+  }
+
+  /**
+   * Write entries to a file, sorted by key and without a timestamp, so that the same entries always
+   * produce the same file.
+   *
+   * @param props the entries to write
+   * @param file the file to write
+   * @throws IOException if the file cannot be written
+   */
+  static void store(Properties props, Path file) throws IOException {
+    try (StringWriter sw = new StringWriter()) {
+      props.store(sw, null);
+      Files.write(file, (Iterable<String>) sw.toString().lines().skip(1).sorted()::iterator,
+          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+  }
+
+}
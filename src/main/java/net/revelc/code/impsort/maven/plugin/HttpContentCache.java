@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * A {@link ContentCache} on a plain HTTP server. Entries are read with <code>GET</code> and written
+ * with <code>PUT</code> on <code>&lt;baseUrl&gt;/&lt;key&gt;</code>; a <code>404</code> response is
+ * a cache miss. Any static file server that accepts uploads, such as a generic artifact repository,
+ * can be used.
+ *
+ * <p>
+ * A request which fails without a response, such as when the server closed a kept-alive connection,
+ * is tried once more, on a new connection. Only a server which can't be connected to, or which
+ * doesn't answer in time, is {@link ContentCache.UnavailableException unavailable}.
+ */
+class HttpContentCache implements ContentCache {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  private final URI baseUri;
+  private final HttpClient client;
+
+  HttpContentCache(String baseUrl) {
+    this.baseUri = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+    this.client = HttpClient.newBuilder().connectTimeout(TIMEOUT)
+        .followRedirects(HttpClient.Redirect.NORMAL).build();
+  }
+
+  @Override
+  public String get(String key) throws IOException {
+    HttpRequest request =
+        HttpRequest.newBuilder(baseUri.resolve(key)).timeout(TIMEOUT).GET().build();
+    HttpResponse<String> response = send(request);
+    if (response.statusCode() == 404) {
+      return null;
+    }
+    checkStatus(request, response);
+    return response.body();
+  }
+
+  @Override
+  public void put(String key, String value) throws IOException {
+    HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(key)).timeout(TIMEOUT)
+        .PUT(HttpRequest.BodyPublishers.ofString(value, StandardCharsets.UTF_8)).build();
+    checkStatus(request, send(request));
+  }
+
+  private HttpResponse<String> send(HttpRequest request) throws IOException {
+    try {
+      try {
+        return client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+      } catch (IOException e) {
+        if (isUnavailable(e)) {
+          throw e;
+        }
+        // the connection is dropped from the client's pool, so this opens a new one
+        return client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+      }
+    } catch (IOException e) {
+      String message = "No response to " + request.method() + " " + request.uri() + ": " + e;
+      throw isUnavailable(e) ? new UnavailableException(message, e) : new IOException(message, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted during " + request.method() + " " + request.uri(), e);
+    }
+  }
+
+  // the server can't be connected to, or timed out, as opposed to a failure of one connection
+  private static boolean isUnavailable(IOException e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof ConnectException || t instanceof HttpTimeoutException
+          || t instanceof UnknownHostException || t instanceof NoRouteToHostException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void checkStatus(HttpRequest request, HttpResponse<String> response)
+      throws IOException {
+    if (response.statusCode() / 100 != 2) {
+      throw new IOException("Unexpected response " + response.statusCode() + " from "
+          + request.method() + " " + request.uri());
+    }
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Limits the number of file bytes being processed at the same time. Readers block in
+ * {@link #acquire(long)} until enough of the budget has been released by other readers. Files at or
+ * above the large file threshold take the entire budget, so they are processed one at a time.
+ */
+final class InFlightBudget {
+
+  private final long maxBytes;
+  private final long largeFileThreshold;
+
+  private long inFlight;
+  private int waitingExclusive;
+
+  /**
+   * Create a new budget.
+   *
+   * @param maxBytes the total number of bytes allowed in flight; zero or less disables the limit
+   * @param largeFileThreshold the size at which a file is processed on its own; zero or less
+   *        disables exclusive processing
+   */
+  InFlightBudget(long maxBytes, long largeFileThreshold) {
+    this.maxBytes = maxBytes;
+    this.largeFileThreshold = largeFileThreshold;
+  }
+
+  boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * Reserve room for a file of the given size, blocking until it is available.
+   *
+   * @param size the size of the file, in bytes
+   * @return the number of bytes reserved, to be passed to {@link #release(long)}
+   * @throws InterruptedException if interrupted while waiting
+   */
+  long acquire(long size) throws InterruptedException {
+    if (!isEnabled()) {
+      return 0;
+    }
+    boolean exclusive = largeFileThreshold > 0 && size >= largeFileThreshold;
+    long charge = exclusive ? maxBytes : Math.max(0, Math.min(size, maxBytes));
+    if (exclusive) {
+      synchronized (this) {
+        waitingExclusive++;
+      }
+    }
+    try {
+      // the room may be held by files of other executions sharing the budget and the workers
+      WorkerGovernor.managedBlock(new ForkJoinPool.ManagedBlocker() {
+        @Override
+        public boolean block() throws InterruptedException {
+          synchronized (InFlightBudget.this) {
+            while (!tryReserve(exclusive, charge)) {
+              InFlightBudget.this.wait();
+            }
+          }
+          return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+          synchronized (InFlightBudget.this) {
+            return tryReserve(exclusive, charge);
+          }
+        }
+      });
+    } finally {
+      if (exclusive) {
+        synchronized (this) {
+          waitingExclusive--;
+          notifyAll();
+        }
+      }
+    }
+    return charge;
+  }
+
+  private boolean tryReserve(boolean exclusive, long charge) {
+    // let waiting large files in first, so they aren't starved by a stream of small ones
+    boolean room =
+        exclusive ? inFlight == 0 : waitingExclusive == 0 && inFlight + charge <= maxBytes;
+    if (room) {
+      inFlight += charge;
+    }
+    return room;
+  }
+
+  synchronized void release(long charge) {
+    if (charge > 0) {
+      inFlight -= charge;
+      notifyAll();
+    }
+  }
+
+  synchronized long getInFlight() {
+    return inFlight;
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * Combines the hash caches written by sharded runs (see the <code>shard</code> parameter of the
+ * other goals) into one, which later runs of any shard, or of the whole project, can start from.
+ * For example, after each CI node has run <code>mvn impsort:check -Dimpsort.shard=i/4</code> with
+ * its own <code>impsort.cachedir</code>, collect their caches, and run
+ * <code>mvn impsort:merge-cache -Dimpsort.cacheFiles=shard1,shard2,shard3,shard4</code>.
+ *
+ * <p>
+ * Since each shard only stores the entries of its own files, the caches don't normally overlap. If
+ * they do, the entry from the cache listed last is kept.
+ *
+ * @since 1.14.0
+ */
+@Mojo(name = "merge-cache", threadSafe = true, requiresDependencyResolution = ResolutionScope.NONE)
+public class MergeCacheMojo extends AbstractMojo {
+
+  /**
+   * The hash caches to combine, in order: either cache files, or the cache directories they were
+   * written to. Caches which don't exist, such as those of shards which had no files, are skipped.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.cacheFiles", required = true)
+  private File[] cacheFiles;
+
+  /**
+   * The directory to write the combined cache to, where the other goals read it from.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(defaultValue = "${project.build.directory}", property = "impsort.cachedir")
+  private File cachedir;
+
+  @Override
+  public void execute() throws MojoFailureException {
+    Properties merged = new Properties();
+    int numMerged = 0;
+    int numConflicts = 0;
+    for (File cacheFile : cacheFiles) {
+      Path path = cacheFile.toPath();
+      if (Files.isDirectory(path)) {
+        path = path.resolve(AbstractImpSortMojo.CACHE_PROPERTIES_FILENAME);
+      }
+      if (!Files.isRegularFile(path)) {
+        getLog().warn("Skipping hash cache which does not exist: " + path);
+        continue;
+      }
+      Properties props;
+      try {
+        props = HashCache.load(path);
+      } catch (IOException e) {
+        throw new MojoFailureException("Cannot read hash cache " + path, e);
+      }
+      for (String key : props.stringPropertyNames()) {
+        String value = props.getProperty(key);
+        Object previous = merged.setProperty(key, value);
+        if (previous != null && !previous.equals(value)) {
+          getLog().debug("Conflicting hash cache entries for " + key + "; using " + path);
+          numConflicts++;
+        }
+      }
+      numMerged++;
+    }
+    if (numConflicts > 0) {
+      getLog().warn(numConflicts
+          + " files had different entries in more than one hash cache; kept the last of each");
+    }
+
+    Path output = cachedir.toPath().resolve(AbstractImpSortMojo.CACHE_PROPERTIES_FILENAME);
+    try {
+      Files.createDirectories(cachedir.toPath());
+      HashCache.store(merged, output);
+    } catch (IOException e) {
+      throw new MojoFailureException("Cannot write hash cache " + output, e);
+    }
+    getLog().info(String.format("Merged %d hash caches into %s (%d entries)", numMerged, output,
+        merged.size()));
+  }
+
+}
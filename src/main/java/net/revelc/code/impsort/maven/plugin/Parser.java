@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import com.github.javaparser.ParserConfiguration.LanguageLevel;
+import net.revelc.code.impsort.JavaParserBackend;
+import net.revelc.code.impsort.JavacParserBackend;
+import net.revelc.code.impsort.ParserBackend;
+
+/**
+ * The parser used to read the source files.
+ */
+enum Parser {
+
+  /**
+   * The bundled JavaParser library.
+   */
+  JAVAPARSER {
+    @Override
+    ParserBackend create(LanguageLevel languageLevel) {
+      return new JavaParserBackend(languageLevel);
+    }
+  },
+
+  /**
+   * The parser of the JDK running the build.
+   */
+  JAVAC {
+    @Override
+    ParserBackend create(LanguageLevel languageLevel) {
+      return new JavacParserBackend(languageLevel);
+    }
+  };
+
+  abstract ParserBackend create(LanguageLevel languageLevel);
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+/**
+ * The order in which files are started.
+ */
+enum Schedule {
+
+  /**
+   * Start each file as soon as it is found, while the directories are still being searched.
+   */
+  FOUND,
+
+  /**
+   * Find all the files first, then start the largest ones first, so a few very large files don't
+   * end up running on their own after all the others are done.
+   */
+  LARGEST_FIRST
+
+}
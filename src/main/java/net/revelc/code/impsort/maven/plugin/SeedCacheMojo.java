@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * Records every file as sorted in the hash cache, without parsing them, for a tree which is known
+ * to be sorted, such as just after it was formatted, or when a cache is first set up for it (for
+ * example, <code>mvn impsort:seed-cache</code>). Later runs of the other goals then only parse the
+ * files which have changed since. Files are only hashed, so this costs little more than reading
+ * them.
+ *
+ * <p>
+ * A sample of the files can be parsed and checked as usual, to verify that the tree really is
+ * sorted. If any of them isn't, the build fails, and neither the hash cache nor the content cache
+ * records the files assumed to be sorted.
+ *
+ * @since 1.14.0
+ */
+@Mojo(name = "seed-cache", threadSafe = true, requiresDependencyResolution = ResolutionScope.NONE)
+public class SeedCacheMojo extends CheckMojo {
+
+  /**
+   * The percentage of the files, chosen at random, to parse and check, rather than assume to be
+   * sorted. Set to <code>0</code> to parse none of them, or <code>100</code> to check them all.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.samplePercent", defaultValue = "0")
+  private double samplePercent;
+
+  @Override
+  boolean assumeSorted(Path path) {
+    return ThreadLocalRandom.current().nextDouble() * 100 >= samplePercent;
+  }
+
+}
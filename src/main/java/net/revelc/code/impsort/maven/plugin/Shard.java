@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One of a number of disjoint shares of the files, such as those checked by each of several CI
+ * nodes. Files are assigned by a hash of their key in the per-path hash cache (their path relative
+ * to the project, with <code>/</code> as the separator), so a file is always in the same shard, on
+ * any machine, and every file is in exactly one shard.
+ */
+final class Shard {
+
+  private final int index;
+  private final int count;
+
+  private Shard(int index, int count) {
+    this.index = index;
+    this.count = count;
+  }
+
+  /**
+   * Parse a shard.
+   *
+   * @param spec the shard, as <code>index/count</code>, where the index starts at 1
+   * @return the shard
+   * @throws IllegalArgumentException if the shard isn't valid
+   */
+  static Shard parse(String spec) {
+    String[] parts = spec.trim().split("/", -1);
+    if (parts.length == 2) {
+      try {
+        int index = Integer.parseInt(parts[0].trim());
+        int count = Integer.parseInt(parts[1].trim());
+        if (count > 0 && index > 0 && index <= count) {
+          return new Shard(index, count);
+        }
+      } catch (NumberFormatException e) {
+        // reported below
+      }
+    }
+    throw new IllegalArgumentException("Invalid shard '" + spec
+        + "'; expected index/count, such as 1/4, where 1 <= index <= count");
+  }
+
+  /**
+   * Check whether a file is in this shard.
+   *
+   * @param key the file's key in the per-path hash cache
+   * @return true if the file is in this shard
+   */
+  boolean includes(String key) {
+    String normalized = key.replace('\\', '/');
+    int hash = Hashing.murmur3_32_fixed().hashString(normalized, StandardCharsets.UTF_8).asInt();
+    return Math.floorMod(hash, count) == index - 1;
+  }
+
+  @Override
+  public String toString() {
+    return index + "/" + count;
+  }
+
+}
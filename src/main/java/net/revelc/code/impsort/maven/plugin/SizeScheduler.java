@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Orders files for processing from the largest to the smallest.
+ *
+ * <p>
+ * A parallel stream over a sorted list would split it into contiguous chunks, one per task, so the
+ * largest files would all land in the first chunk. Instead, every task takes its next file from a
+ * single shared position in the sorted list, and the stream is split only into as many tasks as
+ * there are threads in the pool. This is the longest-processing-time-first heuristic: the largest
+ * files are started first, on all threads, and the small files fill in the gaps at the end.
+ */
+final class SizeScheduler {
+
+  private SizeScheduler() {}
+
+  private static final class SizedPath {
+    private final Path path;
+    private final long size;
+
+    private SizedPath(Path path) {
+      this.path = path;
+      long s;
+      try {
+        s = Files.size(path);
+      } catch (IOException e) {
+        // the error is reported when the file is read
+        s = -1;
+      }
+      this.size = s;
+    }
+  }
+
+  /**
+   * Collect the given files, and stream them from the largest to the smallest.
+   *
+   * @param paths the files to process
+   * @return a parallel stream of the files, in which each task takes the largest remaining file
+   */
+  static Stream<Path> largestFirst(Stream<Path> paths) {
+    List<Path> sorted = paths.map(SizedPath::new)
+        .sorted(Comparator.comparingLong((SizedPath p) -> p.size).reversed()).map(p -> p.path)
+        .collect(Collectors.toList());
+    return StreamSupport.stream(new SharedQueue(sorted), true);
+  }
+
+  /**
+   * A view of the sorted files, shared by all the tasks processing them.
+   */
+  private static final class SharedQueue implements Spliterator<Path> {
+
+    private final List<Path> paths;
+    private final AtomicInteger next;
+    private final AtomicInteger splits;
+
+    SharedQueue(List<Path> paths) {
+      this(paths, new AtomicInteger(), new AtomicInteger());
+    }
+
+    private SharedQueue(List<Path> paths, AtomicInteger next, AtomicInteger splits) {
+      this.paths = paths;
+      this.next = next;
+      this.splits = splits;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Path> action) {
+      int i = next.getAndIncrement();
+      if (i >= paths.size()) {
+        return false;
+      }
+      action.accept(paths.get(i));
+      return true;
+    }
+
+    @Override
+    public Spliterator<Path> trySplit() {
+      int parallelism = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism()
+          : ForkJoinPool.getCommonPoolParallelism();
+      if (estimateSize() < 2 || splits.incrementAndGet() > parallelism) {
+        return null;
+      }
+      return new SharedQueue(paths, next, splits);
+    }
+
+    @Override
+    public long estimateSize() {
+      return Math.max(0, paths.size() - next.get());
+    }
+
+    @Override
+    public int characteristics() {
+      return DISTINCT | NONNULL;
+    }
+  }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * Sorts the imports of every module in the reactor in a single parallel pass, run once from the
+ * top-level project (for example, <code>mvn impsort:sort-all</code>). The source directories of all
+ * modules are searched together, so the work is balanced across all modules, rather than one module
+ * at a time, and one hash cache is kept, in the <code>cachedir</code> of the top-level project. The
+ * configuration of the top-level project applies to all modules. The number of files processed is
+ * reported for each module.
+ *
+ * @since 1.14.0
+ */
+@Mojo(name = "sort-all", aggregator = true, threadSafe = true,
+    requiresDependencyResolution = ResolutionScope.NONE)
+public class SortAllMojo extends SortMojo {
+
+  @Override
+  boolean isAggregator() {
+    return true;
+  }
+
+}
@@ -14,20 +14,50 @@
 
 package net.revelc.code.impsort.maven.plugin;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import net.revelc.code.impsort.Result;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 
 @Mojo(name = "sort", defaultPhase = LifecyclePhase.PROCESS_SOURCES, threadSafe = true,
     requiresDependencyResolution = ResolutionScope.NONE)
 public class SortMojo extends AbstractImpSortMojo {
 
+  /**
+   * Write the sorted files to this directory, instead of sorting them in place, leaving the source
+   * files untouched. Each file is written to the same path relative to the directory as it has
+   * relative to the project, so <code>src/main/java/a/B.java</code> is written to
+   * <code>${outputDirectory}/src/main/java/a/B.java</code>.
+   *
+   * <p>
+   * Only files whose imports need sorting are written. Files which are already sorted are hard
+   * linked to their source (or copied, where the file system doesn't support that), and left alone
+   * if they're already there, so staging a tree which is mostly sorted costs little more than
+   * creating the directory entries. Unsorted files are written again only if their source changed
+   * after they were last written.
+   *
+   * @since 1.14.0
+   */
+  @Parameter(property = "impsort.outputDirectory")
+  private File outputDirectory;
+
+  // set once a file couldn't be hard linked, such as across file systems, so the rest are copied
+  private volatile boolean copying;
+
   @Override
   public byte[] processResult(Path path, Result results) throws MojoFailureException {
+    if (outputDirectory != null) {
+      return writeToOutputDirectory(path, results);
+    }
     if (results.isSorted()) {
       return null; // nothing to do
     }
@@ -39,4 +69,91 @@ public class SortMojo extends AbstractImpSortMojo {
     }
   }
 
+  @Override
+  boolean processCachedUnsorted(Path path) throws MojoFailureException {
+    // the sorted file was written from the same contents before, unless it's been changed since
+    return outputDirectory != null && isCurrent(path, outputFile(path));
+  }
+
+  @Override
+  void processCachedSorted(Path path) throws MojoFailureException {
+    if (outputDirectory != null) {
+      Path target = outputFile(path);
+      try {
+        link(path, target);
+      } catch (IOException e) {
+        fail("Error writing " + target, e);
+      }
+    }
+  }
+
+  // the source is never modified, so the hash cache records whether it's sorted, as check does
+  private byte[] writeToOutputDirectory(Path path, Result results) throws MojoFailureException {
+    Path target = outputFile(path);
+    try {
+      if (results.isSorted()) {
+        link(path, target);
+      } else {
+        Files.createDirectories(target.getParent());
+        // the target may be a link to the source, which must not be written through
+        Files.deleteIfExists(target);
+        results.saveSorted(target);
+        refresh(target);
+      }
+    } catch (IOException e) {
+      fail("Error writing sorted imports for file " + path + " to " + target, e);
+    }
+    return null;
+  }
+
+  private Path outputFile(Path path) throws MojoFailureException {
+    Path basedir = project.getBasedir().toPath().toAbsolutePath();
+    Path source = path.toAbsolutePath();
+    if (!source.startsWith(basedir)) {
+      fail("Cannot write " + path + " to outputDirectory, since it's outside of " + basedir);
+    }
+    return outputDirectory.toPath().resolve(basedir.relativize(source).toString());
+  }
+
+  /**
+   * Make the target the same as the source, by hard linking it, or by copying it, with its
+   * modification time, if it can't be linked. Nothing is done if the target is already a link to
+   * the source, or, where files are copied, a copy with the same contents.
+   */
+  private void link(Path source, Path target) throws IOException {
+    if (Files.exists(target)
+        && (Files.isSameFile(source, target) || copying && Files.mismatch(source, target) == -1)) {
+      return;
+    }
+    Files.createDirectories(target.getParent());
+    if (!copying) {
+      try {
+        try {
+          Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+          Files.delete(target);
+          Files.createLink(target, source);
+        }
+        refresh(target);
+        return;
+      } catch (UnsupportedOperationException | FileSystemException e) {
+        // such as across file systems
+        copying = true;
+      }
+    }
+    Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.COPY_ATTRIBUTES);
+    refresh(target);
+  }
+
+  // true if the target is a separate file, written no earlier than the source was last changed
+  private static boolean isCurrent(Path source, Path target) {
+    try {
+      return !Files.isSameFile(source, target)
+          && Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(source)) >= 0;
+    } catch (IOException e) {
+      return false; // such as when the target doesn't exist
+    }
+  }
+
 }
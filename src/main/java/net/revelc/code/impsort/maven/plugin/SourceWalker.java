@@ -0,0 +1,300 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Finds the files under a set of directories which match Ant-style include and exclude patterns,
+ * with the same semantics as the case-insensitive plexus <code>DirectoryScanner</code> (without
+ * following symbolic links), but walking the directories lazily and in parallel.
+ *
+ * <p>
+ * The patterns are compiled once, into {@link PathMatcher}s over paths relative to their root
+ * directory. Directories matched by an exclude pattern that ends in <code>/**</code>, such as
+ * <code>**&#47;generated/**</code>, are skipped without being listed, since nothing below them
+ * could be included. The resulting stream splits the pending directories between its tasks, so
+ * separate subtrees are listed concurrently, and files are handed out as soon as their directory
+ * has been listed. As with <code>DirectoryScanner</code>, directories which can't be listed are
+ * skipped.
+ */
+final class SourceWalker {
+
+  private static final String REGEX_PREFIX = "%regex[";
+  private static final String ANT_PREFIX = "%ant[";
+
+  private final List<PathMatcher> includes;
+  private final List<PathMatcher> excludes;
+  private final List<PathMatcher> subtreeExcludes;
+  private final BiConsumer<Path, IOException> onUnreadable;
+
+  /**
+   * Create a new walker, which silently skips directories that can't be listed.
+   *
+   * @param includes the patterns for files to include
+   * @param excludes the patterns for files to exclude, or null for none
+   * @param defaultExcludes the patterns excluded in addition to the given excludes, such as version
+   *        control metadata
+   */
+  SourceWalker(String[] includes, String[] excludes, String[] defaultExcludes) {
+    this(includes, excludes, defaultExcludes, (path, e) -> {
+    });
+  }
+
+  /**
+   * Create a new walker.
+   *
+   * @param includes the patterns for files to include
+   * @param excludes the patterns for files to exclude, or null for none
+   * @param defaultExcludes the patterns excluded in addition to the given excludes, such as version
+   *        control metadata
+   * @param onUnreadable called, from the threads of the walk, with each directory or entry which is
+   *        skipped because it can't be read
+   */
+  SourceWalker(String[] includes, String[] excludes, String[] defaultExcludes,
+      BiConsumer<Path, IOException> onUnreadable) {
+    this.onUnreadable = onUnreadable;
+    this.includes = new ArrayList<>();
+    this.excludes = new ArrayList<>();
+    this.subtreeExcludes = new ArrayList<>();
+    for (String include : includes) {
+      this.includes.add(compile(include));
+    }
+    List<String> allExcludes = new ArrayList<>();
+    if (excludes != null) {
+      Collections.addAll(allExcludes, excludes);
+    }
+    Collections.addAll(allExcludes, defaultExcludes);
+    for (String exclude : allExcludes) {
+      PathMatcher matcher = compile(exclude);
+      this.excludes.add(matcher);
+      if (normalize(exclude).endsWith("/**")) {
+        this.subtreeExcludes.add(matcher);
+      }
+    }
+  }
+
+  private static String normalize(String pattern) {
+    String p = pattern.trim().replace('\\', '/');
+    if (p.startsWith(ANT_PREFIX) && p.endsWith("]")) {
+      p = p.substring(ANT_PREFIX.length(), p.length() - 1);
+    }
+    if (p.startsWith("/")) {
+      p = p.substring(1);
+    }
+    // as with DirectoryScanner, a trailing slash matches everything below the directory
+    return p.endsWith("/") ? p + "**" : p;
+  }
+
+  /**
+   * Compile an Ant-style pattern into a case-insensitive matcher for relative paths. A
+   * <code>%regex[...]</code> pattern is used as a regular expression over the relative path, with
+   * <code>/</code> as the separator.
+   */
+  static PathMatcher compile(String pattern) {
+    String trimmed = pattern.trim();
+    Pattern regex;
+    if (trimmed.startsWith(REGEX_PREFIX) && trimmed.endsWith("]")) {
+      regex = Pattern.compile(trimmed.substring(REGEX_PREFIX.length(), trimmed.length() - 1),
+          Pattern.CASE_INSENSITIVE);
+    } else {
+      regex = Pattern.compile(toRegex(normalize(trimmed)), Pattern.CASE_INSENSITIVE);
+    }
+    return path -> regex.matcher(toRelativeName(path)).matches();
+  }
+
+  private static String toRegex(String pattern) {
+    String[] segments = pattern.split("/+");
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < segments.length; i++) {
+      String segment = segments[i];
+      boolean last = i == segments.length - 1;
+      if (segment.equals("**")) {
+        // zero or more whole directories, or anything at all at the end of the pattern
+        regex.append(last ? ".*" : "(?:[^/]*/)*");
+        continue;
+      }
+      for (char c : segment.toCharArray()) {
+        if (c == '*') {
+          regex.append("[^/]*");
+        } else if (c == '?') {
+          regex.append("[^/]");
+        } else {
+          regex.append(Pattern.quote(String.valueOf(c)));
+        }
+      }
+      if (!last) {
+        if (i == segments.length - 2 && segments[i + 1].equals("**")) {
+          // "dir/**" also matches the directory itself
+          regex.append("(?:/.*)?");
+          break;
+        }
+        regex.append('/');
+      }
+    }
+    return regex.toString();
+  }
+
+  private static String toRelativeName(Path path) {
+    String name = path.toString();
+    String separator = path.getFileSystem().getSeparator();
+    return separator.equals("/") ? name : name.replace(separator, "/");
+  }
+
+  boolean isIncluded(Path relative) {
+    return matchesAny(includes, relative) && !matchesAny(excludes, relative);
+  }
+
+  // true if nothing below the directory could be included
+  boolean isExcludedSubtree(Path relative) {
+    return matchesAny(subtreeExcludes, relative);
+  }
+
+  private static boolean matchesAny(List<PathMatcher> matchers, Path relative) {
+    for (PathMatcher matcher : matchers) {
+      if (matcher.matches(relative)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Walk the given directories.
+   *
+   * @param roots the directories to search
+   * @return a lazy, parallel stream of the included files
+   */
+  Stream<Path> walk(Collection<Path> roots) {
+    Walk walk = new Walk();
+    for (Path root : roots) {
+      walk.dirs.add(new Dir(root, root));
+    }
+    return StreamSupport.stream(walk, true);
+  }
+
+  private static final class Dir {
+    private final Path root;
+    private final Path path;
+
+    private Dir(Path root, Path path) {
+      this.root = root;
+      this.path = path;
+    }
+  }
+
+  /**
+   * Lists one directory at a time, as files are needed, and splits off the pending directories (or
+   * the files found so far, if there are no more directories) for other tasks.
+   */
+  private final class Walk implements Spliterator<Path> {
+
+    private final Deque<Dir> dirs = new ArrayDeque<>();
+    private final Deque<Path> files = new ArrayDeque<>();
+
+    private void list(Dir dir) {
+      try {
+        // at a depth of one, the subdirectories are passed to visitFile, rather than entered
+        Files.walkFileTree(dir.path, Collections.emptySet(), 1, new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isSymbolicLink()) {
+              return FileVisitResult.CONTINUE;
+            }
+            Path relative = dir.root.relativize(file);
+            if (attrs.isDirectory()) {
+              if (!isExcludedSubtree(relative)) {
+                dirs.add(new Dir(dir.root, file));
+              }
+            } else if (attrs.isRegularFile() && isIncluded(relative)) {
+              files.add(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) {
+            onUnreadable.accept(file, e);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      } catch (IOException e) {
+        onUnreadable.accept(dir.path, e);
+      }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Path> action) {
+      while (files.isEmpty()) {
+        if (dirs.isEmpty()) {
+          return false;
+        }
+        list(dirs.poll());
+      }
+      action.accept(files.poll());
+      return true;
+    }
+
+    @Override
+    public Spliterator<Path> trySplit() {
+      if (dirs.size() == 1) {
+        list(dirs.poll());
+      }
+      Walk split = new Walk();
+      if (dirs.size() > 1) {
+        for (int i = dirs.size() / 2; i > 0; i--) {
+          split.dirs.add(dirs.poll());
+        }
+      } else if (files.size() > 1) {
+        for (int i = files.size() / 2; i > 0; i--) {
+          split.files.add(files.poll());
+        }
+      } else {
+        return null;
+      }
+      return split;
+    }
+
+    @Override
+    public long estimateSize() {
+      // unknown until the walk is done, which keeps the stream splitting off work for other tasks
+      return dirs.isEmpty() && files.isEmpty() ? 0 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+      return DISTINCT | NONNULL;
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link ContentCache} that checks a fast local cache before a slower shared one. Entries found
+ * only in the shared cache are copied to the local one, and new entries are written to both.
+ *
+ * <p>
+ * If the shared cache can't be reached, it's left out for the rest of the run, rather than waiting
+ * for it to time out for every file. Only the first such failure is reported.
+ */
+class TieredContentCache implements ContentCache {
+
+  private final ContentCache local;
+  private final ContentCache shared;
+  private final AtomicBoolean sharedAvailable = new AtomicBoolean(true);
+
+  TieredContentCache(ContentCache local, ContentCache shared) {
+    this.local = local;
+    this.shared = shared;
+  }
+
+  @Override
+  public String get(String key) throws IOException {
+    String value = local.get(key);
+    if (value == null && sharedAvailable.get()) {
+      try {
+        value = shared.get(key);
+      } catch (UnavailableException e) {
+        sharedUnavailable(e);
+      }
+      if (value != null) {
+        local.put(key, value);
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public void put(String key, String value) throws IOException {
+    local.put(key, value);
+    if (sharedAvailable.get()) {
+      try {
+        shared.put(key, value);
+      } catch (UnavailableException e) {
+        sharedUnavailable(e);
+      }
+    }
+  }
+
+  // reports the failure which disables the shared cache, and ignores any others already under way
+  private void sharedUnavailable(UnavailableException e) throws IOException {
+    if (sharedAvailable.getAndSet(false)) {
+      throw new IOException(
+          e.getMessage() + "; not using the shared content cache for the rest of this run", e);
+    }
+  }
+
+  @Override
+  public long evict(long maxEntries) throws IOException {
+    return local.evict(maxEntries);
+  }
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Shares a bounded set of worker threads between all the executions of this plugin which run at the
+ * same time in its class loader, such as those of the modules of a parallel build (
+ * <code>mvn -T</code>). Each execution submits its files as a job. The workers take one file at a
+ * time from each running job in turn, so concurrent modules get an even share of the workers,
+ * however many files each has, and no more files are processed at once than there are workers.
+ *
+ * <p>
+ * Workers are started as they are needed, up to the largest number requested by a running job, and
+ * stop once they have been idle for a while, so nothing is left running between builds.
+ *
+ * <p>
+ * The jobs also share an {@link InFlightBudget}, so the memory used for the files in flight is
+ * bounded across the whole build, rather than for each execution. A worker waiting for room in the
+ * budget, or for a file to be read, may be waiting for the files of other jobs to be processed, so
+ * it waits through {@link #managedBlock(ForkJoinPool.ManagedBlocker)}, and another worker takes its
+ * place in the meantime.
+ */
+final class WorkerGovernor {
+
+  private static final WorkerGovernor SHARED = new WorkerGovernor(2000);
+  private static final ThreadLocal<WorkerGovernor> CURRENT = new ThreadLocal<>();
+
+  private final long idleMillis;
+  private final Deque<Job<?>> jobs = new ArrayDeque<>(); // with files left, in the order served
+  private final Map<List<Long>, InFlightBudget> budgets = new HashMap<>();
+  private int workers;
+  private int blocked; // workers waiting in managedBlock, which others take the place of
+  private int nextWorkerId;
+
+  /**
+   * Create a new governor.
+   *
+   * @param idleMillis how long a worker waits for more work before it stops
+   */
+  WorkerGovernor(long idleMillis) {
+    this.idleMillis = idleMillis;
+  }
+
+  /**
+   * The governor shared by every execution in this plugin's class loader.
+   */
+  static WorkerGovernor shared() {
+    return SHARED;
+  }
+
+  /**
+   * Process all of the given items on the shared workers, and wait for them to finish.
+   *
+   * @param threads the number of workers this job may use at once
+   * @param items the items to process; only one worker at a time takes the next one
+   * @param visitor processes one item, returning its failure, if any
+   * @return the failures of all the items, with the first one holding the others as suppressed
+   *         exceptions, or null if there weren't any
+   * @throws InterruptedException if interrupted while waiting; the items being processed still
+   *         finish, but no more are started
+   */
+  <T> MojoFailureException run(int threads, Iterator<T> items,
+      Function<T, MojoFailureException> visitor) throws InterruptedException {
+    Job<T> job = new Job<>(Math.max(1, threads), items, visitor);
+    synchronized (this) {
+      jobs.addLast(job);
+      startWorkers();
+      notifyAll();
+    }
+    return job.await();
+  }
+
+  /**
+   * The budget shared by the jobs which limit the bytes in flight with the same settings.
+   *
+   * @param maxBytes the total number of bytes allowed in flight
+   * @param largeFileThreshold the size at which a file is processed on its own
+   * @return the budget
+   */
+  synchronized InFlightBudget budget(long maxBytes, long largeFileThreshold) {
+    return budgets.computeIfAbsent(List.of(maxBytes, largeFileThreshold),
+        k -> new InFlightBudget(maxBytes, largeFileThreshold));
+  }
+
+  /**
+   * Wait for something which may only happen once the items of other jobs are processed. On a
+   * worker, another worker is started in its place, if needed, until it's done waiting; elsewhere,
+   * this waits as {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)} does on a thread
+   * outside of any pool.
+   *
+   * @param blocker the wait
+   * @throws InterruptedException if interrupted while waiting
+   */
+  static void managedBlock(ForkJoinPool.ManagedBlocker blocker) throws InterruptedException {
+    if (blocker.isReleasable()) {
+      return;
+    }
+    WorkerGovernor governor = CURRENT.get();
+    if (governor != null) {
+      synchronized (governor) {
+        governor.blocked++;
+        governor.startWorkers();
+      }
+    }
+    try {
+      while (!blocker.isReleasable() && !blocker.block()) {
+        // woken up too early, so wait again
+      }
+    } finally {
+      if (governor != null) {
+        synchronized (governor) {
+          governor.blocked--;
+        }
+      }
+    }
+  }
+
+  /**
+   * Whether the current thread is a worker of a governor.
+   */
+  static boolean isWorker() {
+    return CURRENT.get() != null;
+  }
+
+  private void startWorkers() {
+    while (workers - blocked < maxThreads()) {
+      workers++;
+      Thread worker = new Thread(this::work, "impsort-worker-" + nextWorkerId++);
+      worker.setDaemon(true);
+      worker.start();
+    }
+  }
+
+  private int maxThreads() {
+    return jobs.stream().mapToInt(j -> j.threads).max().orElse(0);
+  }
+
+  synchronized int getWorkers() {
+    return workers;
+  }
+
+  private void work() {
+    CURRENT.set(this);
+    while (true) {
+      Job<?> job;
+      synchronized (this) {
+        if (workers - blocked > maxThreads()) {
+          // took the place of a worker which is done waiting
+          workers--;
+          return;
+        }
+        long deadline = System.currentTimeMillis() + idleMillis;
+        while ((job = nextJob()) == null) {
+          long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0 || jobs.isEmpty()) {
+            workers--;
+            return;
+          }
+          try {
+            wait(remaining);
+          } catch (InterruptedException e) {
+            workers--;
+            return;
+          }
+        }
+      }
+      job.processNext();
+      synchronized (this) {
+        job.active--;
+        if (job.exhausted) {
+          jobs.remove(job);
+          if (job.active == 0) {
+            job.complete();
+          }
+        }
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Take the next job in turn which isn't using all of its workers already, and move it to the back
+   * of the line.
+   */
+  private Job<?> nextJob() {
+    for (int i = jobs.size(); i > 0; i--) {
+      Job<?> job = jobs.pollFirst();
+      if (job.exhausted) {
+        // abandoned while none of its items were being processed
+        if (job.active == 0) {
+          job.complete();
+        }
+        continue;
+      }
+      jobs.addLast(job);
+      if (job.active < job.threads) {
+        job.active++;
+        return job;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The items of one execution, and the outcome of processing them.
+   */
+  private static final class Job<T> {
+    private final int threads;
+    private final Iterator<T> items;
+    private final Function<T, MojoFailureException> visitor;
+
+    private int active; // guarded by the governor
+    // read without the job's lock, which is held while waiting for the next item
+    private volatile boolean exhausted;
+    private boolean done;
+    private MojoFailureException failure;
+    private Throwable error;
+
+    private Job(int threads, Iterator<T> items, Function<T, MojoFailureException> visitor) {
+      this.threads = threads;
+      this.items = items;
+      this.visitor = visitor;
+    }
+
+    private void processNext() {
+      T item;
+      synchronized (this) {
+        if (exhausted) {
+          return;
+        }
+        try {
+          item = items.hasNext() ? items.next() : null;
+        } catch (RuntimeException | Error e) {
+          item = null;
+          error = e;
+        }
+        if (item == null) {
+          exhausted = true;
+          return;
+        }
+      }
+      try {
+        MojoFailureException e = visitor.apply(item);
+        if (e != null) {
+          synchronized (this) {
+            if (failure == null) {
+              failure = e;
+            } else {
+              failure.addSuppressed(e);
+            }
+          }
+        }
+      } catch (RuntimeException | Error e) {
+        synchronized (this) {
+          if (error == null) {
+            error = e;
+          }
+          exhausted = true;
+        }
+      }
+    }
+
+    private synchronized void complete() {
+      done = true;
+      notifyAll();
+    }
+
+    private synchronized MojoFailureException await() throws InterruptedException {
+      try {
+        while (!done) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        exhausted = true;
+        throw e;
+      }
+      if (error instanceof RuntimeException) {
+        throw (RuntimeException) error;
+      } else if (error instanceof Error) {
+        throw (Error) error;
+      }
+      return failure;
+    }
+  }
+
+}
@@ -17,6 +17,7 @@ package net.revelc.code.impsort;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.github.javaparser.ParserConfiguration.LanguageLevel;
@@ -29,15 +30,19 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import net.revelc.code.impsort.ex.ImpSortException;
 import org.junit.jupiter.api.Test;
 
 public class ImpSortTest {
@@ -124,6 +129,152 @@ public class ImpSortTest {
     assertTrue(imports.contains("org.junit.Assert.*"));
   }
 
+  @Test
+  public void testSymbolsAreShared() throws IOException {
+    Grouper grouper = new Grouper("java.,javax.,org.,com.", "", false, false, true);
+    ImpSort impSort = new ImpSort(StandardCharsets.UTF_8, grouper, false, true, LineEnding.AUTO);
+    Path p =
+        Paths.get(System.getProperty("user.dir"), "src", "test", "resources", "UnusedImports.java");
+    List<Import> first = List.copyOf(impSort.parseFile(p).getImports());
+    List<Import> second = List.copyOf(impSort.parseFile(p).getImports());
+    assertEquals(first, second);
+    for (int i = 0; i < first.size(); i++) {
+      ImportSymbol symbol = first.get(i).getSymbol();
+      assertTrue(symbol == second.get(i).getSymbol(), "Not interned: " + symbol);
+      assertEquals(grouper.symbol(symbol.getName()).getId(), symbol.getId());
+      assertEquals(symbol.getId(), symbol.hashCode());
+      assertTrue(symbol.nameEquals(ImportSymbol.of(symbol.getName())));
+    }
+    assertEquals(first.size(), first.stream().map(Import::getSymbol).distinct().count());
+
+    ImportSymbol map = grouper.symbol("java.util.Map");
+    assertEquals("java.util", map.getContainingName());
+    assertEquals("Map", map.getSimpleName());
+    assertEquals(0, map.getGroupOrder(false));
+    assertEquals(0, map.getGroupOrder(true));
+    assertEquals(3, grouper.symbol("com.foo.Type1").getGroupOrder(false));
+    assertEquals(4, grouper.symbol("net.foo.Type1").getGroupOrder(false));
+    // group assignment is the same for imports which weren't interned by the grouper
+    assertEquals(3, grouper.groupOrder(new Import(false, "com.foo.Type1", "", "", "\n")));
+  }
+
+  @Test
+  public void testSectionCache() throws IOException {
+    Grouper grouper = new Grouper("java.,javax.,org.,com.", "", false, false, true);
+    ImpSort impSort = new ImpSort(StandardCharsets.UTF_8, grouper, false, true, LineEnding.LF);
+    Path p =
+        Paths.get(System.getProperty("user.dir"), "src", "test", "resources", "UnusedImports.java");
+    // checking the file doesn't need its new section, but sorting it does
+    Result first = impSort.parseFile(p);
+    assertFalse(first.isSorted());
+    assertEquals(0, grouper.getSectionCacheMisses());
+    String section = grouper.groupedImports(first.getImports(), "\n");
+    assertEquals(0, grouper.getSectionCacheHits());
+    assertEquals(1, grouper.getSectionCacheMisses());
+    Result second = impSort.parseFile(p);
+    assertEquals(section, grouper.groupedImports(second.getImports(), "\n"));
+    assertEquals(1, grouper.getSectionCacheHits());
+
+    // the order of the imports doesn't matter, but their contents and line endings do
+    List<Import> imports = new ArrayList<>(first.getImports());
+    Collections.reverse(imports);
+    assertEquals(section, grouper.groupedImports(imports, "\n"));
+    assertEquals(2, grouper.getSectionCacheHits());
+    assertEquals(section.replace("\n", "\r\n"), grouper.groupedImports(imports, "\r\n"));
+    imports.set(0,
+        new Import(imports.get(0).isStatic(), imports.get(0).getImport(), "// comment", "", "\n"));
+    assertFalse(section.equals(grouper.groupedImports(imports, "\n")));
+    assertEquals(2, grouper.getSectionCacheHits());
+  }
+
+  @Test
+  public void testImportComments() {
+    Import first = new Import(false, "a.A", "// first\n", "  // one ", "\n");
+    Import second = new Import(false, "a.A", "/* second */", "", "\n");
+    Import third = new Import(false, "a.A", "", "// three", "\n");
+    assertEquals("// first", first.getPrefix());
+    assertEquals(" // one", first.getSuffix());
+    assertEquals("// first\nimport a.A; // one", first.toString());
+    assertEquals("import a.A;", new Import(false, "a.A", " ", "\n", "\n").toString());
+
+    Import combined = first.combineWith(second).combineWith(third);
+    assertEquals("// first\n/* second */\nimport a.A; // one // three", combined.toString());
+    assertEquals(combined,
+        new Import(false, "a.A", "// first\n/* second */", " // one // three", "\n"));
+    assertFalse(combined.equals(first.combineWith(third)));
+    StringBuilder sb = new StringBuilder("x");
+    combined.appendTo(sb);
+    assertEquals("x" + combined, sb.toString());
+  }
+
+  @Test
+  public void testSortedWithoutRendering() throws IOException {
+    String[] imports = {"import static java.lang.Math.max;", "import static org.junit.Assert.*;",
+        "import static org.junit.Assert.assertTrue;", "import java.io.File;",
+        "import java.util.List;", "import java.util.Map;", "import javax.inject.Inject;",
+        "import org.foo.Bar;", "import com.foo.Baz;", "import net.foo.Qux;"};
+    Grouper[] groupers = {new Grouper("java.,javax.,org.,com.", "", false, false, true),
+        new Grouper("java.,javax.,org.,com.", "", false, false, false),
+        new Grouper("java.,javax.,org.,com.", "java,*", true, false, true),
+        new Grouper("*", "*", false, true, true), new Grouper("*", "*", true, true, false)};
+    Random random = new Random(1);
+    int sorted = 0;
+    int unsorted = 0;
+    for (Grouper grouper : groupers) {
+      ImpSort impSort = new ImpSort(StandardCharsets.UTF_8, grouper, false, true, LineEnding.LF);
+      List<Import> all = impSort
+          .parseFile(Paths.get("Imports.java"),
+              String.join("\n", "package p;", "", String.join("\n", imports), "",
+                  "class Imports {}", "").getBytes(StandardCharsets.UTF_8))
+          .getImports().stream().collect(Collectors.toList());
+      String rendered = grouper.groupedImports(all, "\n");
+      for (int i = 0; i < 200; i++) {
+        List<String> lines = new ArrayList<>(Arrays.asList(rendered.split("\n", -1)));
+        lines.remove(lines.size() - 1);
+        // perturb the sorted section in a few different ways, or not at all
+        int a = random.nextInt(lines.size());
+        int b = random.nextInt(lines.size());
+        switch (random.nextInt(5)) {
+          case 0:
+            Collections.swap(lines, a, b);
+            break;
+          case 1:
+            lines.add(a, "");
+            break;
+          case 2:
+            lines.remove(a);
+            break;
+          case 3:
+            lines.set(a, lines.get(a) + " ");
+            break;
+          default:
+        }
+        String section = String.join("\n", lines) + "\n";
+        String file = random.nextBoolean() ? section + "\nclass Imports {}\n"
+            : "package p;\n" + (random.nextBoolean() ? "\n" : "\n\n") + section
+                + (random.nextBoolean() ? "\n" : " \n") + "class Imports {}\n";
+        long lookups = grouper.getSectionCacheMisses() + grouper.getSectionCacheHits();
+        Result result =
+            impSort.parseFile(Paths.get("Imports.java"), file.getBytes(StandardCharsets.UTF_8));
+        // compare with the result of rendering the section
+        String expected = (file.startsWith("package p;\n\n") ? "package p;\n\n" : "")
+            + grouper.groupedImports(result.getImports(), "\n") + "\nclass Imports {}\n";
+        assertEquals(file.equals(expected), result.isSorted(), file);
+        if (result.getImports().size() == lines.stream().filter(l -> !l.isEmpty()).count()) {
+          // no duplicates or comments, so nothing was rendered to check it
+          assertEquals(lookups + 1,
+              grouper.getSectionCacheMisses() + grouper.getSectionCacheHits());
+        }
+        if (result.isSorted()) {
+          sorted++;
+        } else {
+          unsorted++;
+        }
+      }
+    }
+    assertTrue(sorted > 100 && unsorted > 100, sorted + " sorted, " + unsorted + " unsorted");
+  }
+
   @Test
   public void testEmptyJavadoc() throws IOException {
     Path p =
@@ -140,6 +291,64 @@ public class ImpSortTest {
     assertTrue(imports.contains("java.util.ArrayList"));
   }
 
+  @Test
+  public void testHeaderOnly() throws IOException {
+    ImpSort impSort =
+        new ImpSort(StandardCharsets.UTF_8, eclipseDefaults, false, true, LineEnding.LF);
+    for (String name : new String[] {"BasicPluginTests.java", "FirstImportComment.java",
+        "UnusedImports.java", "EmptyJavadoc.java"}) {
+      Path p = Paths.get(System.getProperty("user.dir"), "src", "test", "resources", name);
+      byte[] buf = Files.readAllBytes(p);
+      Result full = impSort.parseFile(p, buf);
+      Result header = impSort.parseFile(p, buf, true);
+      assertEquals(List.copyOf(full.getImports()), List.copyOf(header.getImports()), name);
+      assertEquals(full.isSorted(), header.isSorted(), name);
+      Path fullOutput = File.createTempFile("impSortFull", null, new File("target")).toPath();
+      Path headerOutput = File.createTempFile("impSortHeader", null, new File("target")).toPath();
+      try {
+        full.saveSorted(fullOutput);
+        header.saveSorted(headerOutput);
+        assertArrayEquals(Files.readAllBytes(fullOutput), Files.readAllBytes(headerOutput), name);
+      } finally {
+        Files.delete(fullOutput);
+        Files.delete(headerOutput);
+      }
+    }
+
+    // the body isn't parsed at all
+    String source = "/* header\n * import not.This;\n */\n@Deprecated\npackage p;\n\n"
+        + "import java.util.Map;\nimport\n  java.util.List;\n// import not.This;\n\n"
+        + "public class A {\n  this is not Java; import not.This;\n}\n";
+    byte[] buf = source.getBytes(StandardCharsets.UTF_8);
+    Path p = Paths.get("A.java");
+    assertThrows(ImpSortException.class, () -> impSort.parseFile(p, buf));
+    Result header = impSort.parseFile(p, buf, true);
+    assertEquals(List.of("java.util.Map", "java.util.List"),
+        header.getImports().stream().map(Import::getImport).collect(Collectors.toList()));
+    assertFalse(header.isSorted());
+    assertEquals(0, ImpSort.countHeaderLines(List.of("package p;", "", "class A {}")));
+    assertThrows(IllegalStateException.class,
+        () -> new ImpSort(StandardCharsets.UTF_8, eclipseDefaults, true, true, LineEnding.LF)
+            .parseFile(p, buf, true));
+  }
+
+  @Test
+  public void testHeaderRegionLength() {
+    String header = "/* license */\npackage p;\r\n\nimport a.A;\n// comment\n@Deprecated\n";
+    String body = "\n  void m() {}\n}\n";
+    String source = header + "class \u00c9 {" + "\n" + body;
+    byte[] buf = source.getBytes(StandardCharsets.UTF_8);
+    // through the first declaration line, in bytes
+    assertEquals(header.length() + "class \u00c9 {\n".getBytes(StandardCharsets.UTF_8).length,
+        ImpSort.headerRegionLength(buf, StandardCharsets.UTF_8));
+    // the region doesn't end before the end of the file
+    byte[] imports = "package p;\nimport a.A;\n".getBytes(StandardCharsets.UTF_8);
+    assertEquals(imports.length, ImpSort.headerRegionLength(imports, StandardCharsets.UTF_8));
+    byte[] unterminated = "import a.A;\nclass A {}".getBytes(StandardCharsets.UTF_8);
+    assertEquals(unterminated.length,
+        ImpSort.headerRegionLength(unterminated, StandardCharsets.UTF_8));
+  }
+
   @Test
   public void parseGroups() {
     assertEquals(Arrays.asList(new Group("*", 0)), Grouper.parse("*"));
@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.javaparser.ParserConfiguration.LanguageLevel;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import net.revelc.code.impsort.ex.ImpSortException;
+import net.revelc.code.impsort.ex.ImpSortException.Reason;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JavacParserBackendTest {
+
+  private static final Grouper eclipseDefaults =
+      new Grouper("java.,javax.,org.,com.", "", false, false, true);
+
+  // comments in and around the imports, which must be attached to the same imports as JavaParser
+  private static final String[] COMMENTS = {"// license\nimport a.B;\nclass X {}",
+      "// license\n\nimport c.D;\nimport a.B;\nclass X {}",
+      "/* license */\n\n// c1\n\n// c2\nimport c.D; // s1\nimport a.B;\n"
+          + "/* c3 */ import e.F; /* s2 */\n// after\n\nclass X {}",
+      "package p; // pc\nimport c.D; import a.B; // s\n// c4\n\n// c5\nimport\n  e.F; // s3\n"
+          + "class X {}",
+      "package p;\n/* a */ /* b */\nimport c.D;\n\n/* orphan */\n\nimport a.B;\n",
+      "/** license */\npackage p;\n\n/** doc */\nimport c.D;\n/**/\nimport a.B;\n"
+          + "/** uses {@link B} */\nclass X {}\n",
+      "@Deprecated\n// between\npackage p;\nimport c.D;\nimport a.B;\nclass X {}",
+      "@Deprecated( // x\n)\npackage p; // y\nimport c.D;\nimport a.B;\nclass X {}",
+      "package p;\r\n// c\r\nimport c.D; // s\r\n\r\n/* multi\r\n line */\r\n"
+          + "import static a.B.e;\r\nclass X { String s = \"// no\"; char c = '\"'; D d; }\r\n",
+      "package p;\n\timport c.D;\t// tab\n\t/* t */\timport a.B;\nclass X {}",
+      "import a.B;\nimport a.B;\n// dup\nimport a.B;\nclass X {}",
+      "package p;\nimport c.*;\nimport static a.B.*;\nimport a.B.C;\n\n"
+          + "class X { String t = \"\"\"\n  // not a comment\n  \"\"\"; C c; }\n",
+      "package p;\n/* x */ import c.D; // s\nimport a.B;\nclass X {}",
+      "import a.B /* in */;\nimport c./* in */D;\nclass X {}",
+      "package p;\nimport c.D;;\nimport a.B;\n\n;class X {}",
+      "package p;\n// x\n\n\n// y\n\n/* z */\nimport static a.B.c; // s\n\n// w\nimport d.E;\n\n"
+          + "// after\n@Deprecated\n// mid\npublic class X { E e; }"};
+
+  @TempDir
+  public Path folder;
+
+  private static List<String> imports(Result result) {
+    return result.getImports().stream().map(Import::toString).collect(Collectors.toList());
+  }
+
+  private static void assertSameResults(Path path, Charset charset, LanguageLevel languageLevel)
+      throws IOException {
+    for (boolean removeUnused : new boolean[] {false, true}) {
+      Result expected = new ImpSort(charset, eclipseDefaults, removeUnused, true, LineEnding.LF,
+          new JavaParserBackend(languageLevel), true).parseFile(path);
+      Result actual = new ImpSort(charset, eclipseDefaults, removeUnused, true, LineEnding.LF,
+          new JavacParserBackend(languageLevel), true).parseFile(path);
+      if (removeUnused && !(expected.getProblems().isEmpty() && actual.getProblems().isEmpty())) {
+        // the parsers recover from errors differently, so they may find different identifiers
+        continue;
+      }
+      String description = path.getFileName() + (removeUnused ? " removing unused" : "");
+      assertEquals(expected.isSorted(), actual.isSorted(), description);
+      assertEquals(imports(expected), imports(actual), description);
+    }
+  }
+
+  @Test
+  public void testSameResultsAsJavaParser() throws IOException {
+    Path resources = Paths.get(System.getProperty("user.dir"), "src", "test", "resources");
+    for (String name : new String[] {"BasicPluginTests.java", "EmptyJavadoc.java",
+        "FirstImportComment.java", "UnusedImports.java", "Java21RecordDeconstruction.java"}) {
+      assertSameResults(resources.resolve(name), StandardCharsets.UTF_8, LanguageLevel.POPULAR);
+    }
+    assertSameResults(resources.resolve("Iso8859File.java"), StandardCharsets.ISO_8859_1,
+        LanguageLevel.POPULAR);
+    assertSameResults(resources.resolve("Java14Preview.java"), StandardCharsets.UTF_8,
+        LanguageLevel.JAVA_14_PREVIEW);
+  }
+
+  @Test
+  public void testSameCommentsAsJavaParser() throws IOException {
+    for (int i = 0; i < COMMENTS.length; i++) {
+      Path path = folder.resolve("X" + i + ".java");
+      Files.write(path, COMMENTS[i].getBytes(StandardCharsets.UTF_8));
+      assertSameResults(path, StandardCharsets.UTF_8, LanguageLevel.POPULAR);
+    }
+  }
+
+  @Test
+  public void testCommentsAsWritten() throws IOException {
+    Path path = folder.resolve("X.java");
+    Files.write(path,
+        "package p;\n//tight\n/*  a\n     b */ import c.D; //s  \nimport a.B;\nclass X {}\n"
+            .getBytes(StandardCharsets.UTF_8));
+    for (ParserBackend backend : new ParserBackend[] {new JavaParserBackend(LanguageLevel.POPULAR),
+        new JavacParserBackend(LanguageLevel.POPULAR)}) {
+      Result result = new ImpSort(StandardCharsets.UTF_8, eclipseDefaults, false, true,
+          LineEnding.LF, backend, true).parseFile(path);
+      assertEquals(List.of("//tight\nimport c.D; //s", "/*  a\n     b */\nimport a.B;"),
+          imports(result), backend.getClass().getSimpleName());
+    }
+  }
+
+  @Test
+  public void testProblems() throws IOException {
+    ImpSort impSort = new ImpSort(StandardCharsets.UTF_8, eclipseDefaults, false, true,
+        LineEnding.LF, new JavacParserBackend(LanguageLevel.POPULAR), true);
+
+    Path belowImports = folder.resolve("Below.java");
+    Files.write(belowImports,
+        "import c.D;\nimport a.B;\nclass X { int x = ; }\n".getBytes(StandardCharsets.UTF_8));
+    Result result = impSort.parseFile(belowImports);
+    assertFalse(result.getProblems().isEmpty());
+    assertTrue(result.getReportableProblems().isEmpty());
+    assertFalse(result.isSorted());
+
+    Path inImports = folder.resolve("In.java");
+    Files.write(inImports,
+        "import c.D\nimport a.B;\nclass X {}\n".getBytes(StandardCharsets.UTF_8));
+    ImpSortException e = assertThrows(ImpSortException.class, () -> impSort.parseFile(inImports));
+    assertEquals(Reason.PARTIAL_PARSE, e.getReason());
+  }
+
+  @Test
+  public void testParseAfterClose() throws IOException {
+    Path path = folder.resolve("X.java");
+    Files.write(path, "import c.D;\nimport a.B;\nclass X {}\n".getBytes(StandardCharsets.UTF_8));
+    try (JavacParserBackend backend = new JavacParserBackend(LanguageLevel.POPULAR)) {
+      ImpSort impSort = new ImpSort(StandardCharsets.UTF_8, eclipseDefaults, false, true,
+          LineEnding.LF, backend, true);
+      assertFalse(impSort.parseFile(path).isSorted());
+      backend.close();
+      // an abandoned parse may still be running when the execution is done
+      assertFalse(impSort.parseFile(path).isSorted());
+    }
+  }
+
+  @Test
+  public void testOptions() {
+    assertEquals(List.of("-proc:none", "-Xlint:-options", "-source", "11"),
+        JavacParserBackend.options(LanguageLevel.JAVA_11, 17));
+    assertEquals(List.of("-proc:none", "-Xlint:-options", "-source", "8"),
+        JavacParserBackend.options(LanguageLevel.JAVA_8, 17));
+    assertEquals(List.of("-proc:none", "-Xlint:-options", "--enable-preview", "-source", "17"),
+        JavacParserBackend.options(LanguageLevel.JAVA_17_PREVIEW, 17));
+    // versions the JDK doesn't support, or doesn't support previews of, use the JDK's own version
+    assertEquals(List.of("-proc:none", "-Xlint:-options"),
+        JavacParserBackend.options(LanguageLevel.JAVA_16_PREVIEW, 17));
+    assertEquals(List.of("-proc:none", "-Xlint:-options"),
+        JavacParserBackend.options(LanguageLevel.JAVA_21, 17));
+    assertEquals(List.of("-proc:none", "-Xlint:-options"),
+        JavacParserBackend.options(LanguageLevel.JAVA_1_4, 17));
+    assertEquals(List.of("-proc:none", "-Xlint:-options"),
+        JavacParserBackend.options(LanguageLevel.BLEEDING_EDGE, 17));
+  }
+
+}
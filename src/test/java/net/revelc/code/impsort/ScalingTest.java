@@ -0,0 +1,224 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.javaparser.ParserConfiguration.LanguageLevel;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Checks that the time and memory needed to sort a file grow no more than roughly linearly with the
+ * size of pathological inputs, to catch accidentally quadratic code paths. Each input is sorted at
+ * a base size and at eight times that size, and the ratio of the costs is compared against a limit
+ * well below the 64 that a quadratic algorithm would show.
+ *
+ * <p>
+ * Since these take a while, and measure time and memory, which vary on shared machines, they only
+ * run with the benchmarks, when the <code>impsort.benchmark</code> system property is
+ * <code>true</code> (for example,
+ * <code>mvn test -Dtest=ScalingTest -Dimpsort.benchmark=true</code>).
+ */
+@EnabledIfSystemProperty(named = "impsort.benchmark", matches = "true")
+public class ScalingTest {
+
+  private static final int GROWTH = 8;
+  // allow for warm-up, GC and timer noise, while still catching quadratic behavior
+  private static final double MAX_TIME_RATIO = GROWTH * 3.0;
+  private static final double MAX_ALLOCATION_RATIO = GROWTH * 1.5;
+
+  private static final ImpSort impSort = new ImpSort(StandardCharsets.UTF_8,
+      new Grouper("java.,javax.,org.,com.", "", false, true, true), true, true, LineEnding.LF,
+      LanguageLevel.JAVA_17, false);
+
+  private static class Cost {
+    long nanos = Long.MAX_VALUE;
+    long allocated = Long.MAX_VALUE;
+  }
+
+  private static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+      return Arrays.stream(t.getThreadAllocatedBytes(t.getAllThreadIds())).filter(b -> b > 0).sum();
+    }
+    return -1;
+  }
+
+  // the cheapest of a few runs, to filter out noise
+  private static Cost measure(String source) throws Exception {
+    byte[] buf = source.getBytes(StandardCharsets.UTF_8);
+    Cost cost = new Cost();
+    for (int i = 0; i < 3; i++) {
+      long allocatedBefore = allocatedBytes();
+      long start = System.nanoTime();
+      Result result = impSort.parseFile(Paths.get("Scaling.java"), buf);
+      long nanos = System.nanoTime() - start;
+      long allocatedAfter = allocatedBytes();
+      assertTrue(result.getImports().size() > 0);
+      cost.nanos = Math.min(cost.nanos, nanos);
+      cost.allocated = Math.min(cost.allocated, allocatedAfter - allocatedBefore);
+    }
+    return cost;
+  }
+
+  private static void assertNearLinear(String description, int baseSize,
+      IntFunction<String> generator) throws Exception {
+    String small = generator.apply(baseSize);
+    String large = generator.apply(baseSize * GROWTH);
+    measure(large); // warm up
+    Cost smallCost = measure(small);
+    Cost largeCost = measure(large);
+    double timeRatio = (double) largeCost.nanos / Math.max(1, smallCost.nanos);
+    assertTrue(timeRatio <= MAX_TIME_RATIO,
+        String.format("%s: %dx the input took %.1fx the time (%d ms vs. %d ms)", description,
+            GROWTH, timeRatio, largeCost.nanos / 1_000_000, smallCost.nanos / 1_000_000));
+    if (smallCost.allocated > 0) {
+      double allocationRatio = (double) largeCost.allocated / smallCost.allocated;
+      assertTrue(allocationRatio <= MAX_ALLOCATION_RATIO,
+          String.format("%s: %dx the input allocated %.1fx the memory (%d KiB vs. %d KiB)",
+              description, GROWTH, allocationRatio, largeCost.allocated / 1024,
+              smallCost.allocated / 1024));
+    }
+  }
+
+  private static String source(CharSequence imports, CharSequence body) {
+    return "package p.scaling;\n\n" + imports + "\npublic class Scaling {\n" + body + "}\n";
+  }
+
+  private static String usages(int count) {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      body.append("  T").append(i).append(" f").append(i).append(";\n");
+    }
+    return body.toString();
+  }
+
+  @Test
+  public void testManyImports() throws Exception {
+    assertNearLinear("distinct imports", 1000, n -> {
+      StringBuilder imports = new StringBuilder();
+      for (int i = n - 1; i >= 0; i--) {
+        imports.append("import ").append(i % 2 == 0 ? "java" : "org").append(".pkg").append(i % 7)
+            .append(".sub").append(i % 13).append(".T").append(i).append(";\n");
+        if (i % 10 == 0) {
+          imports.append("import static com.pkg.S").append(i).append(".member;\n");
+        }
+      }
+      return source(imports, usages(n) + "  { member(); }\n");
+    });
+  }
+
+  @Test
+  public void testDuplicateImports() throws Exception {
+    assertNearLinear("duplicate imports", 1000, n -> {
+      StringBuilder imports = new StringBuilder();
+      for (int i = 0; i < n; i++) {
+        imports.append("import java.util.T").append(i % 10).append(";\n");
+        imports.append("import java.util.T").append(i).append(";\n");
+      }
+      return source(imports, usages(n));
+    });
+  }
+
+  @Test
+  public void testGiantJavadoc() throws Exception {
+    assertNearLinear("giant javadoc", 2000, n -> {
+      StringBuilder javadoc = new StringBuilder("  /**\n");
+      for (int i = 0; i < n; i++) {
+        javadoc.append("   * Line ").append(i).append(" refers to {@link T").append(i % 50)
+            .append("} and some more words, with punctuation; (and) more.\n");
+      }
+      javadoc.append("   * @throws T1 when it fails\n   */\n  void method() {}\n");
+      return source("import java.util.T1;\nimport java.util.T2;\n", javadoc);
+    });
+  }
+
+  @Test
+  public void testVeryLongLines() throws Exception {
+    assertNearLinear("long lines", 20_000, n -> {
+      StringBuilder body = new StringBuilder("  String s = \"");
+      for (int i = 0; i < n; i++) {
+        body.append('x');
+      }
+      body.append("\"; // ");
+      for (int i = 0; i < n; i++) {
+        body.append("T1 ");
+      }
+      body.append("\n  T1 t;\n");
+      return source("import java.util.T1;\n", body);
+    });
+  }
+
+  @Test
+  public void testHugeFile() throws Exception {
+    assertNearLinear("huge file", 500, n -> {
+      StringBuilder body = new StringBuilder();
+      for (int i = 0; i < n; i++) {
+        body.append("  public T").append(i % 20).append(" method").append(i).append("(T")
+            .append(i % 20).append(" arg) {\n    return arg;\n  }\n");
+      }
+      StringBuilder imports = new StringBuilder();
+      for (int i = 0; i < 20; i++) {
+        imports.append("import java.util.T").append(i).append(";\n");
+      }
+      return source(imports, body);
+    });
+  }
+
+  @Test
+  public void testManyComments() throws Exception {
+    // JavaParser attributes comments to the members of a node in time proportional to members x
+    // comments, so only the number of comments grows
+    assertNearLinear("comments", 500, n -> {
+      StringBuilder imports = new StringBuilder();
+      for (int i = 0; i < n; i++) {
+        imports.append("// import comment ").append(i).append("\n");
+        if (i % (n / 20) == 0) {
+          imports.append("import java.util.T").append(i / (n / 20)).append(";\n");
+        }
+      }
+      StringBuilder body = new StringBuilder("  Object[] used = {");
+      for (int i = 0; i < 20; i++) {
+        body.append("T").append(i).append(".class, ");
+      }
+      body.append("};\n");
+      for (int i = 0; i < n * 5; i++) {
+        body.append("  // body comment ").append(i).append("\n");
+      }
+      return source(imports, body);
+    });
+  }
+
+  @Test
+  public void testDuplicatesAreCombined() throws Exception {
+    StringBuilder imports = new StringBuilder();
+    for (int i = 0; i < 3000; i++) {
+      imports.append("import java.util.T").append(i % 3).append(";\n");
+    }
+    Result result = impSort.parseFile(Paths.get("Scaling.java"),
+        source(imports, usages(3)).getBytes(StandardCharsets.UTF_8));
+    assertEquals(3, result.getImports().size());
+  }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.revelc.code.impsort.maven.plugin.AsyncFileReader.FileContents;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AsyncFileReaderTest {
+
+  @TempDir
+  public Path folder;
+
+  private List<Path> createFiles(int count) throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Path file = folder.resolve("File" + i + ".java");
+      StringBuilder sb = new StringBuilder();
+      for (int j = 0; j < i % 17; j++) {
+        sb.append("// file ").append(i).append(", line ").append(j).append('\n');
+      }
+      Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+      files.add(file);
+    }
+    return files;
+  }
+
+  @Test
+  public void testReadsEveryFileOnce() throws IOException {
+    List<Path> files = createFiles(300);
+    InFlightBudget budget = new InFlightBudget(2000, 0);
+    AtomicLong maxInFlight = new AtomicLong();
+    Map<Path, byte[]> contents = new ConcurrentHashMap<>();
+    try (Stream<FileContents> reads =
+        new AsyncFileReader(4, budget, path -> false).read(files.stream())) {
+      reads.forEach(read -> {
+        try {
+          maxInFlight.accumulateAndGet(budget.getInFlight(), Math::max);
+          assertTrue(contents.put(read.getPath(), read.getBytes()) == null, "Read twice");
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } finally {
+          budget.release(read.getReserved());
+        }
+      });
+    }
+    assertEquals(files.size(), contents.size());
+    for (Path file : files) {
+      assertArrayEquals(Files.readAllBytes(file), contents.get(file), file.toString());
+    }
+    assertTrue(maxInFlight.get() <= 2000);
+    assertEquals(0, budget.getInFlight());
+  }
+
+  @Test
+  public void testSkippedFiles() throws IOException {
+    List<Path> files = createFiles(100);
+    Set<Path> skipped =
+        files.stream().filter(file -> files.indexOf(file) % 3 == 0).collect(Collectors.toSet());
+    InFlightBudget budget = new InFlightBudget(2000, 0);
+    Map<Path, Boolean> seen = new ConcurrentHashMap<>();
+    try (Stream<FileContents> reads =
+        new AsyncFileReader(4, budget, skipped::contains).read(files.stream())) {
+      reads.forEach(read -> {
+        seen.put(read.getPath(), read.isSkipped());
+        if (read.isSkipped()) {
+          assertEquals(0, read.getReserved());
+        }
+        budget.release(read.getReserved());
+      });
+    }
+    assertEquals(files.size(), seen.size());
+    for (Path file : files) {
+      assertEquals(skipped.contains(file), seen.get(file), file.toString());
+    }
+    assertEquals(0, budget.getInFlight());
+  }
+
+  @Test
+  public void testCloseReleasesReservations() throws Exception {
+    List<Path> files = createFiles(300);
+    InFlightBudget budget = new InFlightBudget(2000, 0);
+    List<FileContents> taken = new ArrayList<>();
+    try (Stream<FileContents> reads =
+        new AsyncFileReader(8, budget, path -> false).read(files.stream())) {
+      Iterator<FileContents> it = reads.iterator();
+      for (int i = 0; i < 3; i++) {
+        taken.add(it.next());
+      }
+    }
+    // the reads never handed out, including those still in flight, are released by the reader
+    taken.forEach(read -> budget.release(read.getReserved()));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (budget.getInFlight() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, budget.getInFlight());
+  }
+
+  @Test
+  public void testReadErrors() throws IOException {
+    List<Path> files = createFiles(3);
+    files.add(folder.resolve("Missing.java"));
+    files.add(folder);
+    Map<Path, Object> contents = new ConcurrentHashMap<>();
+    try (Stream<FileContents> reads =
+        new AsyncFileReader(2, new InFlightBudget(0, 0), path -> false).read(files.stream())) {
+      reads.forEach(read -> {
+        try {
+          contents.put(read.getPath(), read.getBytes());
+        } catch (IOException e) {
+          contents.put(read.getPath(), e);
+        }
+      });
+    }
+    assertEquals(files.size(), contents.size());
+    assertEquals(0, ((byte[]) contents.get(files.get(0))).length);
+    assertTrue(contents.get(folder.resolve("Missing.java")) instanceof IOException);
+    assertTrue(contents.get(folder) instanceof IOException);
+  }
+
+  @Test
+  public void testProducerFailure() {
+    Stream<Path> paths = Stream.of(folder.resolve("A.java")).map(p -> {
+      throw new IllegalStateException("scan failed");
+    });
+    try (Stream<FileContents> reads =
+        new AsyncFileReader(2, new InFlightBudget(0, 0), path -> false).read(paths)) {
+      IllegalStateException e = assertThrows(IllegalStateException.class, reads::count);
+      assertEquals("scan failed", e.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ContentCacheTest {
+
+  private static final String KEY = "0123456789abcdef0123456789abcdef";
+  private static final String OTHER_KEY = "fedcba9876543210fedcba9876543210";
+
+  @TempDir
+  public Path folder;
+
+  /**
+   * A minimal stand-in for a shared cache server, storing entries in memory.
+   */
+  private static class StandInServer implements AutoCloseable {
+
+    final Map<String, byte[]> entries = new ConcurrentHashMap<>();
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicInteger droppingRequests = new AtomicInteger();
+    final HttpServer server;
+
+    StandInServer() throws IOException {
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+      server.createContext("/cache/", this::handle);
+      server.createContext("/broken/", exchange -> {
+        try (exchange) {
+          exchange.sendResponseHeaders(500, -1);
+        }
+      });
+      server.createContext("/dropped/", exchange -> {
+        // every other request is dropped without a response
+        if (droppingRequests.incrementAndGet() % 2 == 1) {
+          exchange.getRequestBody().readAllBytes();
+          exchange.close();
+        } else {
+          handle(exchange);
+        }
+      });
+      server.start();
+    }
+
+    String url(String context) {
+      return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+          + "/" + context;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+      requests.incrementAndGet();
+      String path = exchange.getRequestURI().getPath();
+      String key = path.substring(path.lastIndexOf('/') + 1);
+      try (exchange) {
+        // a new connection for each request, so one request can't break the next
+        exchange.getResponseHeaders().set("Connection", "close");
+        switch (exchange.getRequestMethod()) {
+          case "GET":
+            byte[] value = entries.get(key);
+            if (value == null) {
+              exchange.sendResponseHeaders(404, -1);
+            } else {
+              exchange.sendResponseHeaders(200, value.length);
+              try (OutputStream out = exchange.getResponseBody()) {
+                out.write(value);
+              }
+            }
+            break;
+          case "PUT":
+            try (InputStream in = exchange.getRequestBody()) {
+              entries.put(key, in.readAllBytes());
+            }
+            exchange.sendResponseHeaders(201, -1);
+            break;
+          default:
+            exchange.sendResponseHeaders(405, -1);
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testDirectoryCache() throws IOException {
+    DirectoryContentCache cache = new DirectoryContentCache(folder.resolve("cache"));
+    assertNull(cache.get(KEY));
+    cache.put(KEY, ContentCache.SORTED);
+    assertEquals(ContentCache.SORTED, cache.get(KEY));
+    cache.put(KEY, ContentCache.SORTS_TO + OTHER_KEY);
+    assertEquals(ContentCache.SORTS_TO + OTHER_KEY, cache.get(KEY));
+    assertNull(cache.get(OTHER_KEY));
+    assertTrue(Files.isRegularFile(folder.resolve("cache").resolve("01").resolve(KEY)));
+    // no temporary files left behind
+    try (var files = Files.list(folder.resolve("cache").resolve("01"))) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  public void testDirectoryCacheEviction() throws IOException {
+    DirectoryContentCache cache = new DirectoryContentCache(folder.resolve("cache"), Duration.ZERO);
+    assertEquals(0, cache.evict(10));
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      String key = String.format("%02d", i) + KEY.substring(2);
+      keys.add(key);
+      cache.put(key, ContentCache.SORTED);
+      Files.setLastModifiedTime(cache.entryPath(key), FileTime.fromMillis(1_000_000L * (i + 1)));
+    }
+    // reading an entry makes it the most recently used
+    assertEquals(ContentCache.SORTED, cache.get(keys.get(0)));
+
+    assertEquals(0, cache.evict(0));
+    assertEquals(0, cache.evict(10));
+    assertEquals(6, cache.evict(4));
+    assertEquals(ContentCache.SORTED, cache.get(keys.get(0)));
+    for (int i = 1; i < 7; i++) {
+      assertNull(cache.get(keys.get(i)));
+    }
+    for (int i = 7; i < 10; i++) {
+      assertEquals(ContentCache.SORTED, cache.get(keys.get(i)));
+    }
+  }
+
+  @Test
+  public void testDirectoryCacheEvictionInterval() throws IOException {
+    DirectoryContentCache cache = new DirectoryContentCache(folder.resolve("cache"));
+    for (int i = 0; i < 10; i++) {
+      cache.put(String.format("%02d", i) + KEY.substring(2), ContentCache.SORTED);
+    }
+    assertEquals(6, cache.evict(4));
+    // another build sharing the directory doesn't list it again until the interval has passed
+    DirectoryContentCache other = new DirectoryContentCache(folder.resolve("cache"));
+    other.put(OTHER_KEY, ContentCache.SORTED);
+    assertEquals(0, other.evict(1));
+    Path marker = folder.resolve("cache").resolve(".last-eviction");
+    Files.setLastModifiedTime(marker, FileTime.fromMillis(
+        System.currentTimeMillis() - DirectoryContentCache.EVICTION_INTERVAL.toMillis() - 1000));
+    assertEquals(4, other.evict(1));
+  }
+
+  @Test
+  public void testHttpCache() throws IOException {
+    try (StandInServer server = new StandInServer()) {
+      HttpContentCache cache = new HttpContentCache(server.url("cache"));
+      assertNull(cache.get(KEY));
+      cache.put(KEY, ContentCache.SORTED);
+      assertEquals(ContentCache.SORTED, cache.get(KEY));
+      assertNull(cache.get(OTHER_KEY));
+      assertEquals(4, server.requests.get());
+    }
+  }
+
+  @Test
+  public void testHttpCacheRetriesDroppedRequests() throws IOException {
+    try (StandInServer server = new StandInServer()) {
+      HttpContentCache cache = new HttpContentCache(server.url("dropped"));
+      cache.put(KEY, ContentCache.SORTED);
+      assertEquals(ContentCache.SORTED, cache.get(KEY));
+      assertEquals(2, server.requests.get());
+      assertEquals(4, server.droppingRequests.get());
+    }
+  }
+
+  @Test
+  public void testHttpCacheErrors() throws IOException {
+    try (StandInServer server = new StandInServer()) {
+      HttpContentCache cache = new HttpContentCache(server.url("broken/"));
+      assertThrows(IOException.class, () -> cache.get(KEY));
+      assertThrows(IOException.class, () -> cache.put(KEY, ContentCache.SORTED));
+    }
+  }
+
+  @Test
+  public void testTieredCache() throws IOException {
+    try (StandInServer server = new StandInServer()) {
+      DirectoryContentCache local = new DirectoryContentCache(folder.resolve("local"));
+      HttpContentCache shared = new HttpContentCache(server.url("cache"));
+      shared.put(KEY, ContentCache.SORTED);
+
+      TieredContentCache cache = new TieredContentCache(local, shared);
+      assertEquals(ContentCache.SORTED, cache.get(KEY));
+      // copied to the local cache, so the server isn't asked again
+      assertEquals(ContentCache.SORTED, local.get(KEY));
+      int requests = server.requests.get();
+      assertEquals(ContentCache.SORTED, cache.get(KEY));
+      assertEquals(requests, server.requests.get());
+
+      cache.put(OTHER_KEY, ContentCache.UNSORTED);
+      assertEquals(ContentCache.UNSORTED, local.get(OTHER_KEY));
+      assertEquals(ContentCache.UNSORTED, shared.get(OTHER_KEY));
+    }
+  }
+
+  @Test
+  public void testTieredCacheWithUnreachableServer() throws IOException {
+    String url;
+    try (StandInServer server = new StandInServer()) {
+      url = server.url("cache");
+    }
+    DirectoryContentCache local = new DirectoryContentCache(folder.resolve("local"));
+    TieredContentCache cache = new TieredContentCache(local, new HttpContentCache(url));
+    IOException e = assertThrows(IOException.class, () -> cache.get(KEY));
+    assertTrue(e.getMessage().contains("for the rest of this run"), e.getMessage());
+    // not tried again, and not reported again
+    assertNull(cache.get(KEY));
+    cache.put(KEY, ContentCache.SORTED);
+    assertEquals(ContentCache.SORTED, cache.get(KEY));
+    assertEquals(ContentCache.SORTED, local.get(KEY));
+  }
+
+}
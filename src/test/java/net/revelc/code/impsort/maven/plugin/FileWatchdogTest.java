@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.revelc.code.impsort.maven.plugin.MojoHarness.CapturingLog;
+import org.junit.jupiter.api.Test;
+
+public class FileWatchdogTest {
+
+  @Test
+  public void testCallWithTimeout() throws Exception {
+    try (FileWatchdog watchdog = new FileWatchdog(new CapturingLog(), 0);
+        FileWatchdog.Progress progress = watchdog.start(Paths.get("Test.java"))) {
+      assertEquals("done", progress.callWithTimeout(() -> "done", 10_000));
+      IOException e = assertThrows(IOException.class, () -> progress.callWithTimeout(() -> {
+        throw new IOException("failed");
+      }, 10_000));
+      assertEquals("failed", e.getMessage());
+
+      CountDownLatch abandoned = new CountDownLatch(1);
+      assertThrows(TimeoutException.class, () -> progress.callWithTimeout(() -> {
+        try {
+          return new CountDownLatch(1).await(1, TimeUnit.MINUTES);
+        } finally {
+          abandoned.countDown();
+        }
+      }, 50));
+      // the abandoned step is interrupted, in case it checks
+      assertTrue(abandoned.await(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testActionsWaitForAbandonedSteps() throws Exception {
+    try (FileWatchdog watchdog = new FileWatchdog(new CapturingLog(), 0, 1)) {
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicBoolean done = new AtomicBoolean();
+      try (FileWatchdog.Progress progress = watchdog.start(Paths.get("Slow.java"))) {
+        progress.whenDone(() -> done.set(true));
+        // a step which ignores interrupts, like a parser
+        assertThrows(TimeoutException.class, () -> progress.callWithTimeout(() -> {
+          Uninterruptibles.awaitUninterruptibly(release);
+          return null;
+        }, 50));
+      }
+      assertFalse(done.get(), "Done before the abandoned step");
+
+      // the only thread is taken by the abandoned step, so the next step times out without running
+      AtomicBoolean ran = new AtomicBoolean();
+      AtomicBoolean otherDone = new AtomicBoolean();
+      try (FileWatchdog.Progress progress = watchdog.start(Paths.get("Other.java"))) {
+        progress.whenDone(() -> otherDone.set(true));
+        TimeoutException e = assertThrows(TimeoutException.class,
+            () -> progress.callWithTimeout(() -> ran.getAndSet(true), 50));
+        assertTrue(e.getMessage().startsWith("no thread was free"), e.getMessage());
+      }
+      assertTrue(otherDone.get(), "A step which never started isn't waited for");
+
+      release.countDown();
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (!done.get() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertTrue(done.get(), "Done once the abandoned step is");
+      assertFalse(ran.get(), "The step given up on before it started never runs");
+    }
+  }
+
+  @Test
+  public void testDeadlineStartsWhenStepRuns() throws Exception {
+    try (FileWatchdog watchdog = new FileWatchdog(new CapturingLog(), 0, 1)) {
+      CountDownLatch busy = new CountDownLatch(1);
+      Thread other = new Thread(() -> {
+        try (FileWatchdog.Progress progress = watchdog.start(Paths.get("First.java"))) {
+          progress.callWithTimeout(() -> {
+            busy.countDown();
+            Thread.sleep(600);
+            return null;
+          }, 10_000);
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      other.start();
+      assertTrue(busy.await(10, TimeUnit.SECONDS));
+      // queued behind the first step, and then running, for longer than the timeout in all
+      try (FileWatchdog.Progress progress = watchdog.start(Paths.get("Second.java"))) {
+        assertEquals("done", progress.callWithTimeout(() -> {
+          Thread.sleep(600);
+          return "done";
+        }, 1000));
+      }
+      other.join();
+    }
+  }
+
+  @Test
+  public void testReportsSlowFiles() throws Exception {
+    CapturingLog log = new CapturingLog();
+    Path slow = Paths.get("Slow.java");
+    try (FileWatchdog watchdog = new FileWatchdog(log, 20)) {
+      try (FileWatchdog.Progress progress = watchdog.start(slow)) {
+        progress.phase("parsing");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (log.messagesContaining("Still processing").isEmpty()
+            && System.currentTimeMillis() < deadline) {
+          Thread.sleep(10);
+        }
+      }
+      assertTrue(log.messages.get(0).startsWith("[INFO] Still processing Slow.java (parsing, "),
+          log.messages.toString());
+      // let a report already under way finish
+      Thread.sleep(50);
+      log.messages.clear();
+      Thread.sleep(100);
+    }
+    assertTrue(log.messages.isEmpty(), "Done files aren't reported: " + log.messages);
+  }
+
+}
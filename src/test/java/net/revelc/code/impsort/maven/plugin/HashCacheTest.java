@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.hash.HashCode;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class HashCacheTest {
+
+  private static final String A = "0123456789abcdef0123456789abcdef";
+  private static final String B = "11111111111111111111111111111111";
+  private static final String C = "22222222222222222222222222222222";
+  private static final String D = "33333333333333333333333333333333";
+  private static final String E = "44444444444444444444444444444444";
+
+  @Test
+  public void testLoadAndStore() {
+    Properties props = new Properties();
+    props.setProperty("/src/main/java/A.java", A);
+    props.setProperty("/src/main/java/B.java", B);
+    HashCache cache = new HashCache(props);
+    assertFalse(cache.isModified());
+    assertEquals(2, cache.size());
+    assertEquals(HashCode.fromString(A), cache.get("/src/main/java/A.java"));
+    // storing the same hash again doesn't require writing the cache
+    cache.put("/src/main/java/B.java", HashCode.fromString(B));
+    assertFalse(cache.isModified());
+    assertEquals(props, cache.toProperties());
+  }
+
+  @Test
+  public void testInvalidEntriesAreDropped() {
+    Properties props = new Properties();
+    props.setProperty("/src/main/java/A.java", A);
+    props.setProperty("/src/main/java/B.java", "not a hash");
+    HashCache cache = new HashCache(props);
+    assertTrue(cache.isModified());
+    assertEquals(1, cache.size());
+    assertNull(cache.get("/src/main/java/B.java"));
+  }
+
+  @Test
+  public void testFailures() {
+    Properties props = new Properties();
+    props.setProperty("/src/main/java/A.java", A);
+    props.setProperty("/src/main/java/B.java", B + "|f1|UNSORTED|");
+    props.setProperty("/src/main/java/C.java", C + "|f1");
+    HashCache cache = new HashCache(props);
+    assertTrue(cache.isModified());
+    assertEquals(2, cache.size());
+
+    // a failure is only reported for the same contents and configuration
+    assertNull(cache.get("/src/main/java/B.java"));
+    assertNull(cache.getFailure("/src/main/java/A.java", HashCode.fromString(A), "f1"));
+    assertNull(cache.getFailure("/src/main/java/B.java", HashCode.fromString(A), "f1"));
+    assertNull(cache.getFailure("/src/main/java/B.java", HashCode.fromString(B), "f2"));
+    HashCache.Failure failure =
+        cache.getFailure("/src/main/java/B.java", HashCode.fromString(B), "f1");
+    assertEquals(HashCache.UNSORTED, failure.getOutcome());
+    assertEquals(List.of(), failure.getDetails());
+
+    List<String> details = List.of("(line 3,col 1) Parse error. Found <EOF>", "a|b\u001fc", "");
+    cache.putFailure("/src/main/java/D.java", HashCode.fromString(D), "f2", "PARTIAL_PARSE",
+        details);
+    HashCache stored = new HashCache(cache.toProperties());
+    assertEquals(props.getProperty("/src/main/java/B.java"),
+        stored.toProperties().getProperty("/src/main/java/B.java"));
+    failure = stored.getFailure("/src/main/java/D.java", HashCode.fromString(D), "f2");
+    assertEquals("PARTIAL_PARSE", failure.getOutcome());
+    assertEquals(List.of(details.get(0), "a|b c", ""), failure.getDetails());
+
+    // once the file is sorted, the failure is replaced
+    stored.put("/src/main/java/D.java", HashCode.fromString(D));
+    assertEquals(HashCode.fromString(D), stored.get("/src/main/java/D.java"));
+    assertNull(stored.getFailure("/src/main/java/D.java", HashCode.fromString(D), "f2"));
+  }
+
+  @Test
+  public void testHeaderEntries() {
+    Properties props = new Properties();
+    props.setProperty("/src/main/java/A.java", A + "@120");
+    props.setProperty("/src/main/java/B.java", B);
+    props.setProperty("/src/main/java/C.java", C + "@-1");
+    props.setProperty("/src/main/java/D.java", D + "@x");
+    HashCache cache = new HashCache(props);
+    assertEquals(2, cache.size());
+    assertEquals(HashCode.fromString(A), cache.get("/src/main/java/A.java"));
+    assertEquals(120, cache.getHeaderLength("/src/main/java/A.java"));
+    assertEquals(-1, cache.getHeaderLength("/src/main/java/B.java"));
+    assertEquals(-1, cache.getHeaderLength("/src/main/java/C.java"));
+
+    // the whole file hashes the same as its header, but it's still a different entry
+    cache = new HashCache(cache.toProperties());
+    assertFalse(cache.isModified());
+    cache.put("/src/main/java/A.java", HashCode.fromString(A));
+    assertTrue(cache.isModified());
+    assertEquals(-1, cache.getHeaderLength("/src/main/java/A.java"));
+    cache.putHeader("/src/main/java/B.java", HashCode.fromString(E), 64);
+    assertEquals(E + "@64", cache.toProperties().getProperty("/src/main/java/B.java"));
+  }
+
+  @Test
+  public void testPruneUntouched() {
+    Properties props = new Properties();
+    props.setProperty("/src/main/java/A.java", A);
+    props.setProperty("/src/main/java/Deleted.java", B);
+    props.setProperty("/src/test/java/ATest.java", C);
+    props.setProperty("/src/it/java/Other.java", D);
+    HashCache cache = new HashCache(props);
+    assertFalse(cache.isModified());
+
+    assertEquals(HashCode.fromString(A), cache.get("/src/main/java/A.java"));
+    assertNull(cache.get("/src/test/java/New.java"));
+    cache.put("/src/test/java/New.java", HashCode.fromString(E));
+    assertTrue(cache.isModified());
+
+    assertEquals(2, cache.pruneUntouched(List.of("/src/main/java/", "/src/test/java/")));
+    assertEquals(3, cache.size());
+    Properties stored = cache.toProperties();
+    assertEquals(A, stored.getProperty("/src/main/java/A.java"));
+    assertEquals(E, stored.getProperty("/src/test/java/New.java"));
+    // entries outside the searched directories are kept
+    assertEquals(D, stored.getProperty("/src/it/java/Other.java"));
+  }
+
+  @Test
+  public void testPruneMarksModified() {
+    Properties props = new Properties();
+    props.setProperty("/src/main/java/Deleted.java", A);
+    HashCache cache = new HashCache(props);
+    assertEquals(0, cache.pruneUntouched(List.of("/src/test/java/")));
+    assertFalse(cache.isModified());
+    assertEquals(1, cache.pruneUntouched(List.of("/src/main/java/")));
+    assertTrue(cache.isModified());
+  }
+
+  @Test
+  public void testConcurrentUpdates() {
+    HashCache cache = new HashCache(new Properties());
+    IntStream.range(0, 10_000).parallel().forEach(i -> {
+      String key = "/src/main/java/C" + i + ".java";
+      assertNull(cache.get(key));
+      cache.put(key, HashCode.fromInt(i));
+    });
+    assertEquals(10_000, cache.size());
+    assertEquals(0, cache.pruneUntouched(List.of("/src/main/java/")));
+    assertEquals(HashCode.fromInt(42), cache.get("/src/main/java/C42.java"));
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+public class InFlightBudgetTest {
+
+  @Test
+  public void testDisabled() throws InterruptedException {
+    InFlightBudget budget = new InFlightBudget(0, 0);
+    assertFalse(budget.isEnabled());
+    assertEquals(0, budget.acquire(Long.MAX_VALUE));
+    assertEquals(0, budget.getInFlight());
+  }
+
+  @Test
+  public void testChargeIsCappedByBudget() throws InterruptedException {
+    InFlightBudget budget = new InFlightBudget(100, 0);
+    assertEquals(40, budget.acquire(40));
+    budget.release(40);
+    // a single file larger than the budget can still be processed, on its own
+    assertEquals(100, budget.acquire(1_000));
+    assertEquals(100, budget.getInFlight());
+    budget.release(100);
+    assertEquals(0, budget.getInFlight());
+  }
+
+  @Test
+  public void testLargeFilesAreExclusive() throws InterruptedException {
+    InFlightBudget budget = new InFlightBudget(100, 10);
+    assertEquals(100, budget.acquire(10));
+    assertEquals(100, budget.getInFlight());
+    budget.release(100);
+    assertEquals(5, budget.acquire(5));
+  }
+
+  @Test
+  public void testBudgetIsNeverExceeded() {
+    final long max = 1_000;
+    InFlightBudget budget = new InFlightBudget(max, 600);
+    AtomicLong peak = new AtomicLong();
+    AtomicBoolean largeOverlapped = new AtomicBoolean();
+    LongStream.range(0, 2_000).parallel().map(i -> (i * 37) % 700).forEach(size -> {
+      long charge = 0;
+      try {
+        charge = budget.acquire(size);
+        long current = budget.getInFlight();
+        peak.accumulateAndGet(current, Math::max);
+        if (size >= 600 && current != max) {
+          largeOverlapped.set(true);
+        }
+        Thread.yield();
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      } finally {
+        budget.release(charge);
+      }
+    });
+    assertTrue(peak.get() <= max, "Peak in-flight bytes exceeded budget: " + peak.get());
+    assertFalse(largeOverlapped.get(), "Large file was processed alongside other files");
+    assertEquals(0, budget.getInFlight());
+  }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Measures the throughput of the whole sort goal over a generated source tree: searching the
+ * directories, hashing, reading and writing the cache, parsing, and writing sorted files. Three
+ * runs are measured: without a cache, with every file cached, and with some files modified since
+ * the previous run.
+ *
+ * <p>
+ * Only runs when the <code>impsort.benchmark</code> system property is <code>true</code>, for
+ * example with <code>mvn test -Dtest=MojoBenchmarkTest -Dimpsort.benchmark=true</code>. The shape
+ * of the tree can be changed with the other <code>impsort.benchmark.*</code> properties below.
+ * Results are written to <code>target/impsort-benchmark-results.properties</code>, and compared
+ * against the baseline in <code>src/test/resources/impsort-benchmark-baseline.properties</code> (or
+ * the file named by <code>impsort.benchmark.baseline</code>). The test fails if throughput drops
+ * below the baseline by more than <code>impsort.benchmark.tolerance</code> (a fraction).
+ */
+@EnabledIfSystemProperty(named = "impsort.benchmark", matches = "true")
+public class MojoBenchmarkTest {
+
+  private static final String[] SHAPE =
+      {"files", "medianLines", "sizeSpread", "imports", "commentDensity", "unsorted", "dirty"};
+  private static final String[] DEFAULTS = {"5000", "200", "1.0", "20", "0.1", "0.2", "0.1"};
+
+  @TempDir
+  public Path basedir;
+
+  private static String property(String name) {
+    for (int i = 0; i < SHAPE.length; i++) {
+      if (SHAPE[i].equals(name)) {
+        return System.getProperty("impsort.benchmark." + name, DEFAULTS[i]);
+      }
+    }
+    return System.getProperty("impsort.benchmark." + name);
+  }
+
+  private static final class Measurement {
+    final String name;
+    final int files;
+    final long nanos;
+    final long peakHeap;
+
+    Measurement(String name, int files, long nanos, long peakHeap) {
+      this.name = name;
+      this.files = files;
+      this.nanos = nanos;
+      this.peakHeap = peakHeap;
+    }
+
+    double filesPerSecond() {
+      return files * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT, "%-6s %8.1f files/s  %7.1f ms  peak heap %6.1f MiB", name,
+          filesPerSecond(), nanos / 1e6, peakHeap / (1024.0 * 1024.0));
+    }
+  }
+
+  private Measurement run(String name, int files) throws Exception {
+    SortMojo mojo = new SortMojo();
+    MojoHarness.configure(mojo, basedir);
+    List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        heapPools.add(pool);
+      }
+    }
+    System.gc();
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    long start = System.nanoTime();
+    mojo.execute();
+    long nanos = System.nanoTime() - start;
+    long peakHeap = heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+    return new Measurement(name, files, nanos, peakHeap);
+  }
+
+  @Test
+  public void benchmarkSortGoal() throws Exception {
+    int fileCount = Integer.parseInt(property("files"));
+    SourceTreeGenerator generator = new SourceTreeGenerator().files(fileCount)
+        .size(Integer.parseInt(property("medianLines")), Double.parseDouble(property("sizeSpread")))
+        .imports(Integer.parseInt(property("imports")))
+        .commentDensity(Double.parseDouble(property("commentDensity")))
+        .unsorted(Double.parseDouble(property("unsorted")));
+    List<Path> files = generator.generate(basedir);
+
+    List<Measurement> measurements = new ArrayList<>();
+    measurements.add(run("cold", fileCount));
+    measurements.add(run("warm", fileCount));
+    generator.touch(files, Double.parseDouble(property("dirty")), 1);
+    measurements.add(run("dirty", fileCount));
+
+    Properties results = new Properties();
+    for (String key : SHAPE) {
+      results.setProperty(key, property(key));
+    }
+    for (Measurement m : measurements) {
+      System.out.println("[benchmark] " + m);
+      results.setProperty(m.name + ".filesPerSecond",
+          String.format(Locale.ROOT, "%.1f", m.filesPerSecond()));
+      results.setProperty(m.name + ".peakHeapBytes", Long.toString(m.peakHeap));
+    }
+    Path resultsFile = Paths.get("target", "impsort-benchmark-results.properties");
+    Files.createDirectories(resultsFile.getParent());
+    try (OutputStream out = Files.newOutputStream(resultsFile)) {
+      results.store(out, "impsort-maven-plugin benchmark results");
+    }
+
+    Properties baseline = loadBaseline();
+    for (String key : SHAPE) {
+      if (!property(key).equals(baseline.getProperty(key))) {
+        System.out.println("[benchmark] Not comparing with the baseline, which was measured with "
+            + key + "=" + baseline.getProperty(key));
+        return;
+      }
+    }
+    double tolerance = Double.parseDouble(System.getProperty("impsort.benchmark.tolerance", "0.5"));
+    List<String> regressions = new ArrayList<>();
+    for (Measurement m : measurements) {
+      double expected = Double.parseDouble(baseline.getProperty(m.name + ".filesPerSecond"));
+      if (m.filesPerSecond() < expected * (1 - tolerance)) {
+        regressions.add(String.format(Locale.ROOT, "%s run: %.1f files/s, baseline %.1f files/s",
+            m.name, m.filesPerSecond(), expected));
+      }
+    }
+    assertTrue(regressions.isEmpty(), "Throughput regressed by more than "
+        + Math.round(tolerance * 100) + "% of the baseline: " + regressions);
+  }
+
+  private static Properties loadBaseline() throws IOException {
+    Properties baseline = new Properties();
+    String file = System.getProperty("impsort.benchmark.baseline");
+    try (InputStream in = file != null ? Files.newInputStream(Paths.get(file))
+        : MojoBenchmarkTest.class.getResourceAsStream("/impsort-benchmark-baseline.properties")) {
+      baseline.load(in);
+    }
+    return baseline;
+  }
+
+}
@@ -0,0 +1,747 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import net.revelc.code.impsort.LineEnding;
+import net.revelc.code.impsort.maven.plugin.MojoHarness.CapturingLog;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.Scanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonatype.plexus.build.incremental.BuildContext;
+import org.sonatype.plexus.build.incremental.EmptyScanner;
+
+/**
+ * Runs the mojos end to end over generated source trees.
+ */
+public class MojoExecutionTest {
+
+  @TempDir
+  public Path basedir;
+
+  private static String summary(CapturingLog log) {
+    List<String> lines = log.messagesContaining("Processed ");
+    assertEquals(1, lines.size(), "Expected one summary line in " + log.messages);
+    return lines.get(0);
+  }
+
+  @Test
+  public void testSortThenCheck() throws Exception {
+    List<Path> files = new SourceTreeGenerator().files(40).size(30, 0.5).unsorted(0.5)
+        .commentDensity(0.2).generate(basedir);
+
+    CheckMojo check = new CheckMojo();
+    MojoHarness.configure(check, basedir);
+    MojoFailureException e = assertThrows(MojoFailureException.class, check::execute);
+    assertTrue(e.getMessage().startsWith("Imports are not sorted in "), e.getMessage());
+
+    SortMojo sort = new SortMojo();
+    CapturingLog sortLog = MojoHarness.configure(sort, basedir);
+    sort.execute();
+    assertTrue(summary(sortLog).startsWith("[INFO] Processed 40 files in "), summary(sortLog));
+    assertTrue(Files.exists(basedir.resolve("target/impsort-maven-cache.properties")));
+
+    // everything is sorted and cached now
+    check = new CheckMojo();
+    CapturingLog checkLog = MojoHarness.configure(check, basedir);
+    check.execute();
+    assertTrue(summary(checkLog).contains("(Already Sorted: 40, Needed Sorting: 0)"),
+        summary(checkLog));
+    assertTrue(checkLog.messagesContaining("Import section cache").isEmpty(), "Nothing parsed");
+
+    // only modified files are parsed again
+    assertEquals(files.size(), 40);
+    int touched = new SourceTreeGenerator().touch(files, 0.25, 7);
+    check = new CheckMojo();
+    checkLog = MojoHarness.configure(check, basedir);
+    check.execute();
+    assertTrue(summary(checkLog).contains("(Already Sorted: 40, Needed Sorting: 0)"),
+        summary(checkLog));
+    assertEquals(List.of("[INFO] Import section cache: 0 hits, " + touched + " misses"),
+        checkLog.messagesContaining("Import section cache"));
+  }
+
+  @Test
+  public void testAsyncReads() throws Exception {
+    List<Path> files = new SourceTreeGenerator().files(60).size(30, 1.0).unsorted(0.5)
+        .commentDensity(0.2).generate(basedir);
+
+    SortMojo sort = new SortMojo();
+    CapturingLog sortLog = MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "readQueueDepth", 4);
+    MojoHarness.set(sort, "maxInFlightBytes", 4096L);
+    sort.execute();
+    assertTrue(summary(sortLog).startsWith("[INFO] Processed 60 files in "), summary(sortLog));
+
+    // nothing cached, so every file is read and checked again
+    Files.delete(basedir.resolve("target/impsort-maven-cache.properties"));
+    new SourceTreeGenerator().touch(files, 0.5, 3);
+    CheckMojo check = new CheckMojo();
+    CapturingLog checkLog = MojoHarness.configure(check, basedir);
+    MojoHarness.set(check, "readQueueDepth", 4);
+    check.execute();
+    assertTrue(summary(checkLog).contains("(Already Sorted: 60, Needed Sorting: 0)"),
+        summary(checkLog));
+
+    // in a warm run, the unchanged files are found by hashing them, instead of being read ahead
+    check = new CheckMojo();
+    checkLog = MojoHarness.configure(check, basedir);
+    MojoHarness.set(check, "readQueueDepth", 4);
+    check.execute();
+    assertTrue(summary(checkLog).contains("(Already Sorted: 60, Needed Sorting: 0)"),
+        summary(checkLog));
+  }
+
+  private static MavenProject module(Path dir, String artifactId) {
+    MavenProject module = new MavenProject();
+    module.setFile(dir.resolve("pom.xml").toFile());
+    module.setArtifactId(artifactId);
+    module.getBuild().setSourceDirectory(dir.resolve("src/main/java").toString());
+    module.getBuild().setTestSourceDirectory(dir.resolve("src/test/java").toString());
+    return module;
+  }
+
+  @Test
+  public void testAggregator() throws Exception {
+    new SourceTreeGenerator().files(30).size(30, 0.5).unsorted(0.5).generate(basedir.resolve("a"));
+    new SourceTreeGenerator().files(20).size(30, 0.5).unsorted(0.5).seed(2)
+        .generate(basedir.resolve("b"));
+    MavenProject root = module(basedir, "root");
+    List<MavenProject> reactor =
+        List.of(root, module(basedir.resolve("a"), "a"), module(basedir.resolve("b"), "b"));
+
+    CheckAllMojo check = new CheckAllMojo();
+    MojoHarness.configure(check, basedir);
+    MojoHarness.set(check, "project", root);
+    MojoHarness.set(check, "reactorProjects", reactor);
+    assertThrows(MojoFailureException.class, check::execute);
+
+    // the modules are processed together, with one cache, and reported separately
+    SortAllMojo sort = new SortAllMojo();
+    CapturingLog log = MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "project", root);
+    MojoHarness.set(sort, "reactorProjects", reactor);
+    sort.execute();
+    assertTrue(summary(log).startsWith("[INFO] Processed 50 files in "), summary(log));
+    assertEquals(1, log.messagesContaining("  a: 30 files (Already Sorted: ").size(),
+        log.messages.toString());
+    assertEquals(1, log.messagesContaining("  b: 20 files (Already Sorted: ").size(),
+        log.messages.toString());
+    assertEquals(50, hashCache().size());
+    assertFalse(Files.exists(basedir.resolve("a/target")));
+
+    check = new CheckAllMojo();
+    log = MojoHarness.configure(check, basedir);
+    MojoHarness.set(check, "project", root);
+    MojoHarness.set(check, "reactorProjects", reactor);
+    check.execute();
+    assertTrue(summary(log).contains("(Already Sorted: 50, Needed Sorting: 0)"), summary(log));
+  }
+
+  @Test
+  public void testLargestFirst() throws Exception {
+    new SourceTreeGenerator().files(40).size(30, 2.0).unsorted(0.5).generate(basedir);
+
+    SortMojo sort = new SortMojo();
+    CapturingLog sortLog = MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "schedule", Schedule.LARGEST_FIRST);
+    sort.execute();
+    assertTrue(summary(sortLog).startsWith("[INFO] Processed 40 files in "), summary(sortLog));
+
+    Files.delete(basedir.resolve("target/impsort-maven-cache.properties"));
+    CheckMojo check = new CheckMojo();
+    CapturingLog checkLog = MojoHarness.configure(check, basedir);
+    MojoHarness.set(check, "schedule", Schedule.LARGEST_FIRST);
+    MojoHarness.set(check, "readQueueDepth", 4);
+    check.execute();
+    assertTrue(summary(checkLog).contains("(Already Sorted: 40, Needed Sorting: 0)"),
+        summary(checkLog));
+  }
+
+  @Test
+  public void testSharedThreads() throws Exception {
+    Path[] modules = {basedir.resolve("a"), basedir.resolve("b")};
+    for (Path module : modules) {
+      new SourceTreeGenerator().files(25).unsorted(0.5).generate(module);
+    }
+    // as in a parallel build, where the modules share the threads
+    List<CompletableFuture<CapturingLog>> runs = new ArrayList<>();
+    for (Path module : modules) {
+      runs.add(CompletableFuture.supplyAsync(() -> {
+        try {
+          SortMojo sort = new SortMojo();
+          CapturingLog log = MojoHarness.configure(sort, module);
+          MojoHarness.set(sort, "threads", 2);
+          sort.execute();
+          return log;
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }));
+    }
+    for (CompletableFuture<CapturingLog> run : runs) {
+      assertTrue(summary(run.get()).startsWith("[INFO] Processed 25 files in "),
+          summary(run.get()));
+    }
+    for (Path module : modules) {
+      CheckMojo check = new CheckMojo();
+      CapturingLog log = MojoHarness.configure(check, module);
+      MojoHarness.set(check, "threads", 2);
+      MojoHarness.set(check, "readQueueDepth", 2);
+      Files.delete(module.resolve("target/impsort-maven-cache.properties"));
+      check.execute();
+      assertTrue(summary(log).contains("(Already Sorted: 25, Needed Sorting: 0)"), summary(log));
+    }
+  }
+
+  @Test
+  public void testShardsAndMergedCache() throws Exception {
+    new SourceTreeGenerator().files(60).size(30, 0.5).unsorted(0.5).commentDensity(1.0)
+        .generate(basedir);
+    SortMojo sort = new SortMojo();
+    MojoHarness.configure(sort, basedir);
+    sort.execute();
+    Files.delete(basedir.resolve("target/impsort-maven-cache.properties"));
+
+    // as on separate nodes, each with its own cache directory
+    Set<String> keys = new HashSet<>();
+    List<File> caches = new ArrayList<>();
+    int total = 0;
+    for (int i = 1; i <= 3; i++) {
+      CheckMojo check = new CheckMojo();
+      CapturingLog log = MojoHarness.configure(check, basedir);
+      File cachedir = basedir.resolve("shard" + i).toFile();
+      MojoHarness.set(check, "cachedir", cachedir);
+      MojoHarness.set(check, "shard", i + "/3");
+      check.execute();
+      Properties props =
+          HashCache.load(cachedir.toPath().resolve("impsort-maven-cache.properties"));
+      assertFalse(props.isEmpty(), "Shard " + i + " has files");
+      for (String key : props.stringPropertyNames()) {
+        assertTrue(keys.add(key), "Shards overlap at " + key);
+      }
+      total += props.size();
+      caches.add(cachedir);
+    }
+    assertEquals(60, total);
+
+    MergeCacheMojo merge = new MergeCacheMojo();
+    CapturingLog mergeLog = new CapturingLog();
+    merge.setLog(mergeLog);
+    MojoHarness.set(merge, "cacheFiles", caches.toArray(new File[0]));
+    MojoHarness.set(merge, "cachedir", basedir.resolve("target").toFile());
+    merge.execute();
+    assertEquals(keys, hashCache().stringPropertyNames());
+
+    // a full run starting from the merged cache doesn't parse anything
+    CheckMojo check = new CheckMojo();
+    CapturingLog log = MojoHarness.configure(check, basedir);
+    check.execute();
+    assertTrue(summary(log).contains("(Already Sorted: 60, Needed Sorting: 0)"), summary(log));
+    assertTrue(log.messagesContaining("Import section cache").isEmpty(), "Nothing parsed");
+  }
+
+  @Test
+  public void testOutputDirectory() throws Exception {
+    List<Path> files = new SourceTreeGenerator().files(40).size(30, 0.5).unsorted(0.5)
+        .commentDensity(1.0).generate(basedir);
+    Map<Path, byte[]> original = contents(files);
+    Path staged = basedir.resolve("staged");
+
+    SortMojo sort = new SortMojo();
+    CapturingLog log = MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "outputDirectory", staged.toFile());
+    sort.execute();
+    assertTrue(summary(log).startsWith("[INFO] Processed 40 files in "), summary(log));
+    Map<Path, byte[]> written = new HashMap<>();
+    int linked = 0;
+    for (Path file : files) {
+      assertArrayEquals(original.get(file), Files.readAllBytes(file), "Source unchanged");
+      Path target = staged.resolve(basedir.relativize(file));
+      if (Files.isSameFile(file, target)) {
+        linked++;
+      } else {
+        written.put(target, Files.readAllBytes(target));
+      }
+    }
+    assertTrue(linked > 0 && !written.isEmpty(),
+        linked + " linked, " + written.size() + " written");
+
+    // the staged tree is sorted
+    CheckMojo check = new CheckMojo();
+    log = MojoHarness.configure(check, staged);
+    check.execute();
+    assertTrue(summary(log).contains("(Already Sorted: 40, Needed Sorting: 0)"), summary(log));
+
+    // nothing is parsed or written again, while the sources and staged files are current
+    Map<Path, FileTime> times = new HashMap<>();
+    for (Path target : written.keySet()) {
+      times.put(target, Files.getLastModifiedTime(target));
+    }
+    sort = new SortMojo();
+    log = MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "outputDirectory", staged.toFile());
+    sort.execute();
+    assertTrue(
+        summary(log)
+            .contains("(Already Sorted: " + linked + ", Needed Sorting: " + written.size() + ")"),
+        summary(log));
+    assertTrue(log.messagesContaining("Import section cache").isEmpty(), "Nothing parsed");
+    for (Path target : written.keySet()) {
+      assertEquals(times.get(target), Files.getLastModifiedTime(target), target.toString());
+    }
+
+    // a stale staged file is written again
+    Path target = written.keySet().iterator().next();
+    Files.delete(target);
+    sort = new SortMojo();
+    MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "outputDirectory", staged.toFile());
+    sort.execute();
+    assertArrayEquals(written.get(target), Files.readAllBytes(target));
+
+    // a sorted file replaced in the staged tree is linked again, even if it looks current
+    Path source =
+        files.stream().filter(f -> !written.containsKey(staged.resolve(basedir.relativize(f))))
+            .findFirst().orElseThrow();
+    Path linkedTarget = staged.resolve(basedir.relativize(source));
+    byte[] replaced = original.get(source).clone();
+    replaced[0] = (byte) (replaced[0] == ' ' ? '\t' : ' ');
+    Files.delete(linkedTarget);
+    Files.write(linkedTarget, replaced);
+    Files.setLastModifiedTime(linkedTarget,
+        FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 60_000));
+    sort = new SortMojo();
+    MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "outputDirectory", staged.toFile());
+    sort.execute();
+    assertTrue(Files.isSameFile(source, linkedTarget));
+  }
+
+  @Test
+  public void testSeedCache() throws Exception {
+    new SourceTreeGenerator().files(40).size(30, 0.5).unsorted(0).commentDensity(1.0)
+        .generate(basedir);
+    SeedCacheMojo seed = new SeedCacheMojo();
+    CapturingLog log = MojoHarness.configure(seed, basedir);
+    seed.execute();
+    assertTrue(summary(log).contains("(Already Sorted: 40, Needed Sorting: 0)"), summary(log));
+    assertTrue(log.messagesContaining("Import section cache").isEmpty(), "Nothing parsed");
+    assertEquals(40, hashCache().size());
+
+    CheckMojo check = new CheckMojo();
+    log = MojoHarness.configure(check, basedir);
+    check.execute();
+    assertTrue(summary(log).contains("(Already Sorted: 40, Needed Sorting: 0)"), summary(log));
+    assertTrue(log.messagesContaining("Import section cache").isEmpty(), "Nothing parsed");
+
+    // a sample which isn't sorted fails, without storing the entries assumed to be sorted
+    Files.delete(basedir.resolve("target/impsort-maven-cache.properties"));
+    new SourceTreeGenerator().files(40).size(30, 0.5).unsorted(0.5).seed(3)
+        .generate(basedir.resolve("b"));
+    seed = new SeedCacheMojo();
+    log = MojoHarness.configure(seed, basedir.resolve("b"));
+    MojoHarness.set(seed, "samplePercent", 50.0);
+    MojoHarness.set(seed, "contentCache", true);
+    assertThrows(MojoFailureException.class, seed::execute);
+    assertFalse(Files.exists(basedir.resolve("b/target/impsort-maven-cache.properties")));
+
+    // nor in the content cache, where they'd hide the unsorted files from the other goals
+    String[] counts = new String[2];
+    for (boolean contentCache : new boolean[] {false, true}) {
+      Files.deleteIfExists(basedir.resolve("b/target/impsort-maven-cache.properties"));
+      check = new CheckMojo();
+      log = MojoHarness.configure(check, basedir.resolve("b"));
+      MojoHarness.set(check, "contentCache", contentCache);
+      assertThrows(MojoFailureException.class, check::execute);
+      String summary = summary(log);
+      // the files found unsorted in the content cache fail without being tallied
+      counts[contentCache ? 1 : 0] =
+          summary.substring(summary.indexOf("Already Sorted"), summary.indexOf(','));
+    }
+    assertEquals(counts[0], counts[1]);
+  }
+
+  @Test
+  public void testJavacParser() throws Exception {
+    new SourceTreeGenerator().files(30).unsorted(0.5).generate(basedir);
+
+    SortMojo sort = new SortMojo();
+    CapturingLog sortLog = MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "parser", Parser.JAVAC);
+    sort.execute();
+    assertTrue(summary(sortLog).startsWith("[INFO] Processed 30 files in "), summary(sortLog));
+
+    // the files sorted with javac are also sorted according to JavaParser
+    Files.delete(basedir.resolve("target/impsort-maven-cache.properties"));
+    CheckMojo check = new CheckMojo();
+    CapturingLog checkLog = MojoHarness.configure(check, basedir);
+    check.execute();
+    assertTrue(summary(checkLog).contains("(Already Sorted: 30, Needed Sorting: 0)"),
+        summary(checkLog));
+  }
+
+  @Test
+  public void testHeaderCacheScope() throws Exception {
+    // with comments, so that every file parsed renders its import section
+    List<Path> files =
+        new SourceTreeGenerator().files(30).unsorted(0.5).commentDensity(1.0).generate(basedir);
+
+    SortMojo sort = new SortMojo();
+    CapturingLog log = MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "cacheScope", CacheScope.HEADER);
+    sort.execute();
+    assertTrue(hashCache().values().stream().allMatch(v -> v.toString().contains("@")),
+        hashCache().toString());
+
+    // changes below the imports don't need the files to be parsed again
+    new SourceTreeGenerator().touch(files, 1.0, 5);
+    CheckMojo check = new CheckMojo();
+    log = MojoHarness.configure(check, basedir);
+    MojoHarness.set(check, "cacheScope", CacheScope.HEADER);
+    check.execute();
+    assertTrue(summary(log).contains("(Already Sorted: 30, Needed Sorting: 0)"), summary(log));
+    assertTrue(log.messagesContaining("Import section cache").isEmpty(), "Nothing parsed");
+
+    // but changes to the imports do, as does hashing whole files
+    Path changed = files.get(0);
+    String source = new String(Files.readAllBytes(changed), StandardCharsets.UTF_8);
+    Files.write(changed, source.replaceFirst("\nimport ", "\nimport zzz.Z;\nimport ")
+        .getBytes(StandardCharsets.UTF_8));
+    check = new CheckMojo();
+    log = MojoHarness.configure(check, basedir);
+    MojoHarness.set(check, "cacheScope", CacheScope.HEADER);
+    MojoHarness.set(check, "readQueueDepth", 2);
+    MojoFailureException e = assertThrows(MojoFailureException.class, check::execute);
+    assertEquals("Imports are not sorted in " + changed, e.getMessage());
+    assertEquals(List.of("[INFO] Import section cache: 0 hits, 1 misses"),
+        log.messagesContaining("Import section cache"));
+    Files.write(changed, source.getBytes(StandardCharsets.UTF_8));
+    check = new CheckMojo();
+    log = MojoHarness.configure(check, basedir);
+    check.execute();
+    assertEquals(List.of("[INFO] Import section cache: 0 hits, 30 misses"),
+        log.messagesContaining("Import section cache"));
+
+    // the line ending to keep is found in the whole file
+    check = new CheckMojo();
+    log = MojoHarness.configure(check, basedir);
+    MojoHarness.set(check, "cacheScope", CacheScope.HEADER);
+    MojoHarness.set(check, "lineEnding", LineEnding.KEEP);
+    check.execute();
+    assertEquals(1, log.messagesContaining("[WARN] cacheScope=HEADER").size(),
+        log.messages.toString());
+  }
+
+  @Test
+  public void testUnchangedLargeFileIsNotParsed() throws Exception {
+    StringBuilder source = new StringBuilder("package p;\n\n// rendered when parsed\n");
+    source.append("import java.util.List;\n\nclass Large {\n");
+    while (source.length() < 300_000) {
+      source.append("  List<String> field").append(source.length()).append(";\n");
+    }
+    source.append("}\n");
+    Path file = basedir.resolve("src/main/java/p/Large.java");
+    Files.createDirectories(file.getParent());
+    Files.write(file, source.toString().getBytes(StandardCharsets.UTF_8));
+
+    CheckMojo check = new CheckMojo();
+    CapturingLog log = MojoHarness.configure(check, basedir);
+    check.execute();
+    assertEquals(List.of("[INFO] Import section cache: 0 hits, 1 misses"),
+        log.messagesContaining("Import section cache"));
+
+    // hashed in chunks from disk, to the same hash as the whole file
+    check = new CheckMojo();
+    log = MojoHarness.configure(check, basedir);
+    check.execute();
+    assertTrue(summary(log).contains("(Already Sorted: 1, Needed Sorting: 0)"), summary(log));
+    assertTrue(log.messagesContaining("Import section cache").isEmpty(), "Nothing parsed");
+  }
+
+  private static Set<String> failures(MojoFailureException e) {
+    Set<String> messages = new HashSet<>();
+    messages.add(e.getMessage());
+    Arrays.stream(e.getSuppressed()).map(Throwable::getMessage).forEach(messages::add);
+    return messages;
+  }
+
+  @Test
+  public void testCachedFailures() throws Exception {
+    new SourceTreeGenerator().files(20).unsorted(0.5).generate(basedir);
+    Path broken = basedir.resolve("src/main/java/Broken.java");
+    Files.write(broken,
+        "import b.B;\nimport a.A;\nclass Broken {\n".getBytes(StandardCharsets.UTF_8));
+
+    CheckMojo check = new CheckMojo();
+    CapturingLog log = MojoHarness.configure(check, basedir);
+    MojoFailureException e = assertThrows(MojoFailureException.class, check::execute);
+    Set<String> expected = failures(e);
+    assertTrue(expected.contains("Error reading file " + broken), expected.toString());
+    assertTrue(expected.size() > 1, expected.toString());
+    List<String> problems = log.messagesContaining("[ERROR]");
+    assertFalse(problems.isEmpty(), "Problems logged");
+
+    // the same files fail the same way, from the cache, without being parsed
+    check = new CheckMojo();
+    log = MojoHarness.configure(check, basedir);
+    e = assertThrows(MojoFailureException.class, check::execute);
+    assertEquals(expected, failures(e));
+    assertTrue(log.messagesContaining("Import section cache").isEmpty(), "Nothing parsed");
+    assertEquals(problems, log.messagesContaining("[ERROR]"), "Problems replayed");
+
+    // a different configuration parses them again
+    check = new CheckMojo();
+    log = MojoHarness.configure(check, basedir);
+    MojoHarness.set(check, "compliance", "11");
+    e = assertThrows(MojoFailureException.class, check::execute);
+    assertEquals(expected, failures(e));
+    assertFalse(log.messagesContaining("Import section cache").isEmpty(), "Parsed again");
+    assertFalse(log.messagesContaining("[ERROR]").isEmpty(), log.messages.toString());
+
+    // sorting isn't affected by the failures recorded by check
+    Files.delete(broken);
+    SortMojo sort = new SortMojo();
+    log = MojoHarness.configure(sort, basedir);
+    sort.execute();
+    check = new CheckMojo();
+    log = MojoHarness.configure(check, basedir);
+    check.execute();
+    assertTrue(summary(log).contains("(Already Sorted: 20, Needed Sorting: 0)"), summary(log));
+  }
+
+  /**
+   * An incremental build context, as in an IDE, where only some files have changed.
+   */
+  @SuppressWarnings("deprecation")
+  private static class IncrementalContext implements BuildContext {
+
+    final List<String> changed = new ArrayList<>();
+    final List<File> refreshed = new CopyOnWriteArrayList<>();
+    private final Map<String, Object> values = new HashMap<>();
+
+    @Override
+    public boolean hasDelta(String relpath) {
+      return !changed.isEmpty();
+    }
+
+    @Override
+    public boolean hasDelta(File file) {
+      return !changed.isEmpty();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean hasDelta(List relpaths) {
+      return !changed.isEmpty();
+    }
+
+    @Override
+    public void refresh(File file) {
+      refreshed.add(file);
+    }
+
+    @Override
+    public OutputStream newFileOutputStream(File file) throws IOException {
+      return Files.newOutputStream(file.toPath());
+    }
+
+    @Override
+    public Scanner newScanner(File basedir) {
+      return new Scanner() {
+        @Override
+        public void setIncludes(String[] includes) {}
+
+        @Override
+        public void setExcludes(String[] excludes) {}
+
+        @Override
+        public void addDefaultExcludes() {}
+
+        @Override
+        public void scan() {}
+
+        @Override
+        public String[] getIncludedFiles() {
+          return changed.toArray(new String[0]);
+        }
+
+        @Override
+        public String[] getIncludedDirectories() {
+          return new String[0];
+        }
+
+        @Override
+        public File getBasedir() {
+          return basedir;
+        }
+
+        @Override
+        public void setFilenameComparator(Comparator<String> filenameComparator) {}
+      };
+    }
+
+    @Override
+    public Scanner newDeleteScanner(File basedir) {
+      return new EmptyScanner(basedir);
+    }
+
+    @Override
+    public Scanner newScanner(File basedir, boolean ignoreDelta) {
+      return newScanner(basedir);
+    }
+
+    @Override
+    public boolean isIncremental() {
+      return true;
+    }
+
+    @Override
+    public void setValue(String key, Object value) {
+      values.put(key, value);
+    }
+
+    @Override
+    public Object getValue(String key) {
+      return values.get(key);
+    }
+
+    @Override
+    public void addWarning(File file, int line, int column, String message, Throwable cause) {}
+
+    @Override
+    public void addError(File file, int line, int column, String message, Throwable cause) {}
+
+    @Override
+    public void addMessage(File file, int line, int column, String message, int severity,
+        Throwable cause) {}
+
+    @Override
+    public void removeMessages(File file) {}
+
+    @Override
+    public boolean isUptodate(File target, File source) {
+      return false;
+    }
+  }
+
+  private Map<Path, byte[]> contents(List<Path> files) throws IOException {
+    Map<Path, byte[]> contents = new HashMap<>();
+    for (Path file : files) {
+      contents.put(file, Files.readAllBytes(file));
+    }
+    return contents;
+  }
+
+  private Properties hashCache() throws IOException {
+    Properties props = new Properties();
+    try (InputStream in =
+        Files.newInputStream(basedir.resolve("target/impsort-maven-cache.properties"))) {
+      props.load(in);
+    }
+    return props;
+  }
+
+  @Test
+  public void testIncrementalBuild() throws Exception {
+    List<Path> files =
+        new SourceTreeGenerator().files(20).size(30, 0.5).unsorted(0.5).generate(basedir);
+    Path root = basedir.resolve("src/main/java");
+    IncrementalContext context = new IncrementalContext();
+
+    // no Java sources changed, so there's nothing to do
+    SortMojo sort = new SortMojo();
+    CapturingLog log = MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "buildContext", context);
+    sort.execute();
+    assertEquals(List.of(), log.messages);
+    assertFalse(Files.exists(basedir.resolve("target/impsort-maven-cache.properties")));
+
+    // only the changed files are processed, and those written are refreshed
+    Map<Path, byte[]> before = contents(files);
+    files.subList(0, 6).forEach(f -> context.changed.add(root.relativize(f).toString()));
+    sort = new SortMojo();
+    log = MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "buildContext", context);
+    sort.execute();
+    assertTrue(summary(log).startsWith("[INFO] Processed 6 files in "), summary(log));
+    Map<Path, byte[]> after = contents(files);
+    Set<File> written = files.stream().filter(f -> !Arrays.equals(before.get(f), after.get(f)))
+        .map(Path::toFile).collect(Collectors.toSet());
+    assertFalse(written.isEmpty());
+    assertEquals(written, new HashSet<>(context.refreshed));
+    assertEquals(context.refreshed.size(), written.size());
+    assertTrue(files.subList(0, 6).stream().map(Path::toFile).collect(Collectors.toSet())
+        .containsAll(written));
+
+    // a full build sorts everything else
+    sort = new SortMojo();
+    log = MojoHarness.configure(sort, basedir);
+    sort.execute();
+    assertTrue(summary(log).startsWith("[INFO] Processed 20 files in "), summary(log));
+    assertEquals(20, hashCache().size());
+
+    // an incremental build can't tell which entries are stale, so it doesn't prune any
+    Files.write(files.get(0), "// changed\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    context.changed.subList(1, context.changed.size()).clear();
+    sort = new SortMojo();
+    log = MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "buildContext", context);
+    sort.execute();
+    assertTrue(summary(log).contains("(Already Sorted: 1, Needed Sorting: 0)"), summary(log));
+    assertEquals(20, hashCache().size());
+
+    // the files written to the output directory are refreshed too
+    Path staged = basedir.resolve("staged");
+    context.refreshed.clear();
+    sort = new SortMojo();
+    MojoHarness.configure(sort, basedir);
+    MojoHarness.set(sort, "buildContext", context);
+    MojoHarness.set(sort, "outputDirectory", staged.toFile());
+    sort.execute();
+    assertEquals(List.of(staged.resolve(basedir.relativize(files.get(0))).toFile()),
+        context.refreshed);
+  }
+
+}
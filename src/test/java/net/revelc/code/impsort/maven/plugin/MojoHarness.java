@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import net.revelc.code.impsort.LineEnding;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+/**
+ * Configures the mojos for tests outside of a Maven build, using the same defaults as the plugin
+ * descriptor.
+ */
+final class MojoHarness {
+
+  private MojoHarness() {}
+
+  /**
+   * A log which keeps the info, warning, and error messages.
+   */
+  static final class CapturingLog implements Log {
+
+    final List<String> messages = new CopyOnWriteArrayList<>();
+
+    List<String> messagesContaining(String text) {
+      return messages.stream().filter(m -> m.contains(text)).collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+      return false;
+    }
+
+    @Override
+    public void debug(CharSequence content) {}
+
+    @Override
+    public void debug(CharSequence content, Throwable error) {}
+
+    @Override
+    public void debug(Throwable error) {}
+
+    @Override
+    public boolean isInfoEnabled() {
+      return true;
+    }
+
+    @Override
+    public void info(CharSequence content) {
+      messages.add("[INFO] " + content);
+    }
+
+    @Override
+    public void info(CharSequence content, Throwable error) {
+      info(content);
+    }
+
+    @Override
+    public void info(Throwable error) {
+      info(error.toString());
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+      return true;
+    }
+
+    @Override
+    public void warn(CharSequence content) {
+      messages.add("[WARN] " + content);
+    }
+
+    @Override
+    public void warn(CharSequence content, Throwable error) {
+      warn(content);
+    }
+
+    @Override
+    public void warn(Throwable error) {
+      warn(error.toString());
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+      return true;
+    }
+
+    @Override
+    public void error(CharSequence content) {
+      messages.add("[ERROR] " + content);
+    }
+
+    @Override
+    public void error(CharSequence content, Throwable error) {
+      error(content);
+    }
+
+    @Override
+    public void error(Throwable error) {
+      error(error.toString());
+    }
+  }
+
+  /**
+   * Configure a mojo for a project in the given directory, with the default parameter values.
+   *
+   * @param mojo the mojo to configure
+   * @param basedir the project directory, containing <code>src/main/java</code> and
+   *        <code>src/test/java</code>
+   * @return the log the mojo writes to
+   */
+  static CapturingLog configure(AbstractImpSortMojo mojo, Path basedir) throws Exception {
+    MavenProject project = new MavenProject();
+    project.setFile(basedir.resolve("pom.xml").toFile());
+    set(mojo, "project", project);
+    set(mojo, "reactorProjects", List.of(project));
+    set(mojo, "buildContext", new DefaultBuildContext());
+    set(mojo, "sourceEncoding", StandardCharsets.UTF_8.name());
+    set(mojo, "skip", false);
+    set(mojo, "staticGroups", "*");
+    set(mojo, "groups", "*");
+    set(mojo, "staticAfter", false);
+    set(mojo, "joinStaticWithNonStatic", false);
+    set(mojo, "sourceDirectory", basedir.resolve("src/main/java").toFile());
+    set(mojo, "testSourceDirectory", basedir.resolve("src/test/java").toFile());
+    set(mojo, "removeUnused", false);
+    set(mojo, "treatSamePackageAsUnused", true);
+    set(mojo, "breadthFirstComparator", true);
+    set(mojo, "lineEnding", LineEnding.AUTO);
+    set(mojo, "compliance", "17");
+    set(mojo, "cachedir", basedir.resolve("target").toFile());
+    set(mojo, "ignoreParseErrorsBelowImports", false);
+    set(mojo, "maxInFlightBytes", 268435456L);
+    set(mojo, "largeFileThreshold", 8388608L);
+    set(mojo, "contentCache", false);
+    set(mojo, "contentCacheDirectory", basedir.resolve("impsort-cache").toFile());
+    set(mojo, "contentCacheMaxEntries", 1000000L);
+    set(mojo, "readQueueDepth", 0);
+    set(mojo, "schedule", Schedule.FOUND);
+    set(mojo, "fileTimeout", 0);
+    set(mojo, "progressInterval", 30);
+    set(mojo, "parser", Parser.JAVAPARSER);
+    set(mojo, "cacheScope", CacheScope.FILE);
+    set(mojo, "threads", 0);
+    set(mojo, "shard", null);
+    if (mojo instanceof SeedCacheMojo) {
+      set(mojo, "samplePercent", 0.0);
+    }
+    if (mojo instanceof SortMojo) {
+      set(mojo, "outputDirectory", null);
+    }
+    CapturingLog log = new CapturingLog();
+    mojo.setLog(log);
+    return log;
+  }
+
+  static void set(Object mojo, String field, Object value) throws Exception {
+    ReflectionUtils.setVariableValueInObject(mojo, field, value);
+  }
+
+}
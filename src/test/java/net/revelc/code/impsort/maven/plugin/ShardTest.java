@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ShardTest {
+
+  @Test
+  public void testParse() {
+    assertEquals("1/1", Shard.parse("1/1").toString());
+    assertEquals("3/4", Shard.parse(" 3 / 4 ").toString());
+    for (String invalid : new String[] {"", "1", "0/4", "5/4", "1/0", "-1/4", "a/4", "1/2/3"}) {
+      assertThrows(IllegalArgumentException.class, () -> Shard.parse(invalid));
+    }
+  }
+
+  @Test
+  public void testEachFileInOneShard() {
+    int count = 5;
+    List<Shard> shards = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      shards.add(Shard.parse(i + "/" + count));
+    }
+    int[] sizes = new int[count];
+    for (int f = 0; f < 1000; f++) {
+      String key = "/src/main/java/p" + f % 7 + "/C" + f + ".java";
+      int found = -1;
+      for (int i = 0; i < count; i++) {
+        if (shards.get(i).includes(key)) {
+          assertEquals(-1, found, key);
+          found = i;
+        }
+      }
+      assertTrue(found >= 0, key);
+      sizes[found]++;
+      // the same shard on every platform
+      assertTrue(shards.get(found).includes(key.replace('/', '\\')), key);
+    }
+    for (int size : sizes) {
+      assertTrue(size > 100, "Roughly even shares");
+    }
+  }
+
+}
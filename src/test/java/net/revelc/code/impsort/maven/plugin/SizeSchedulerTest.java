@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SizeSchedulerTest {
+
+  @TempDir
+  public Path folder;
+
+  private List<Path> createFiles(int count) throws IOException {
+    List<Path> files = new ArrayList<>();
+    Random random = new Random(13);
+    for (int i = 0; i < count; i++) {
+      Path file = folder.resolve("File" + i + ".java");
+      Files.write(file, new byte[random.nextInt(5000)]);
+      files.add(file);
+    }
+    return files;
+  }
+
+  @Test
+  public void testLargestFirst() throws IOException {
+    List<Path> files = createFiles(200);
+    files.add(folder.resolve("Missing.java"));
+    List<Path> scheduled = SizeScheduler.largestFirst(files.parallelStream()).sequential()
+        .collect(Collectors.toList());
+    assertEquals(new HashSet<>(files), new HashSet<>(scheduled));
+    assertEquals(files.size(), scheduled.size());
+    List<Long> sizes = new ArrayList<>();
+    for (Path file : scheduled.subList(0, scheduled.size() - 1)) {
+      sizes.add(Files.size(file));
+    }
+    List<Long> expected = new ArrayList<>(sizes);
+    expected.sort(Collections.reverseOrder());
+    assertEquals(expected, sizes);
+    // files which can't be sized are left for last, and fail when they're read
+    assertEquals(folder.resolve("Missing.java"), scheduled.get(scheduled.size() - 1));
+  }
+
+  @Test
+  public void testEachFileOnce() throws IOException {
+    List<Path> files = createFiles(500);
+    Set<Path> seen = ConcurrentHashMap.newKeySet();
+    long count = SizeScheduler.largestFirst(files.parallelStream()).filter(seen::add).count();
+    assertEquals(files.size(), count);
+    assertEquals(new HashSet<>(files), seen);
+  }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generates a synthetic tree of Java sources for exercising the mojos end to end. The imports of
+ * files which are meant to be sorted are written in the order produced by the default plugin
+ * configuration, so only the unsorted ones need sorting.
+ */
+final class SourceTreeGenerator {
+
+  private static final String[] PACKAGES = {"java.util", "java.io", "java.nio.file",
+      "javax.annotation", "org.apache.commons.lang3", "org.slf4j", "com.google.common.collect",
+      "com.example.core", "com.example.core.internal", "net.example.api"};
+
+  // the default order of static imports
+  private static final Comparator<String> BREADTH_FIRST = (a, b) -> {
+    int aDot = a.lastIndexOf('.');
+    int bDot = b.lastIndexOf('.');
+    int comparison = a.substring(0, aDot).compareTo(b.substring(0, bDot));
+    return comparison != 0 ? comparison : a.substring(aDot).compareTo(b.substring(bDot));
+  };
+
+  private int fileCount = 1000;
+  private int medianLines = 200;
+  private double sizeSpread = 1.0;
+  private int importCount = 20;
+  private double commentDensity = 0.1;
+  private double unsortedRatio = 0.2;
+  private long seed = 42;
+  private final String eol = System.lineSeparator();
+
+  /** The number of files to generate. */
+  SourceTreeGenerator files(int fileCount) {
+    this.fileCount = fileCount;
+    return this;
+  }
+
+  /**
+   * The median length of a file, in lines, and the spread of the log-normal distribution of file
+   * lengths around it. A spread of 0 makes all files the same length.
+   */
+  SourceTreeGenerator size(int medianLines, double sizeSpread) {
+    this.medianLines = medianLines;
+    this.sizeSpread = sizeSpread;
+    return this;
+  }
+
+  /** The average number of imports per file. */
+  SourceTreeGenerator imports(int importCount) {
+    this.importCount = importCount;
+    return this;
+  }
+
+  /** The fraction of imports preceded by a comment. */
+  SourceTreeGenerator commentDensity(double commentDensity) {
+    this.commentDensity = commentDensity;
+    return this;
+  }
+
+  /** The fraction of files whose imports are not sorted. */
+  SourceTreeGenerator unsorted(double unsortedRatio) {
+    this.unsortedRatio = unsortedRatio;
+    return this;
+  }
+
+  SourceTreeGenerator seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * Write the files into <code>src/main/java</code> of the given project directory.
+   *
+   * @param basedir the project directory
+   * @return the generated files
+   */
+  List<Path> generate(Path basedir) throws IOException {
+    Random random = new Random(seed);
+    Path sourceRoot = basedir.resolve("src/main/java");
+    List<Path> files = new ArrayList<>(fileCount);
+    for (int i = 0; i < fileCount; i++) {
+      String pkg = "gen.p" + (i % 50);
+      Path dir = sourceRoot.resolve(pkg.replace('.', '/'));
+      Files.createDirectories(dir);
+      Path file = dir.resolve("Gen" + i + ".java");
+      Files.write(file, source(random, pkg, "Gen" + i).getBytes(StandardCharsets.UTF_8));
+      files.add(file);
+    }
+    return files;
+  }
+
+  /**
+   * Modify the body of a fraction of the files, without changing their imports.
+   *
+   * @param files the files to choose from
+   * @param ratio the fraction of files to modify
+   * @return the number of files modified
+   */
+  int touch(List<Path> files, double ratio, long touchSeed) throws IOException {
+    Random random = new Random(touchSeed);
+    int touched = 0;
+    for (Path file : files) {
+      if (random.nextDouble() < ratio) {
+        Files.write(file, ("// touched " + touchSeed + eol).getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND);
+        touched++;
+      }
+    }
+    return touched;
+  }
+
+  private String source(Random random, String pkg, String className) {
+    int imports = Math.max(1, (int) Math.round(importCount * (0.5 + random.nextDouble())));
+    TreeSet<String> names = new TreeSet<>();
+    TreeSet<String> staticNames = new TreeSet<>(BREADTH_FIRST);
+    while (names.size() + staticNames.size() < imports) {
+      String name = PACKAGES[random.nextInt(PACKAGES.length)] + ".Type" + random.nextInt(300);
+      if (random.nextInt(10) == 0) {
+        staticNames.add(name + ".member" + random.nextInt(5));
+      } else {
+        names.add(name);
+      }
+    }
+    List<String> importLines = new ArrayList<>();
+    staticNames.forEach(n -> importLines.add(importLine(random, "import static " + n + ";")));
+    List<String> nonStaticLines = new ArrayList<>();
+    names.forEach(n -> nonStaticLines.add(importLine(random, "import " + n + ";")));
+    if (random.nextDouble() < unsortedRatio) {
+      importLines.addAll(nonStaticLines);
+      List<String> sorted = new ArrayList<>(importLines);
+      Collections.shuffle(importLines, random);
+      if (importLines.equals(sorted)) {
+        Collections.reverse(importLines);
+      }
+    } else if (!importLines.isEmpty() && !nonStaticLines.isEmpty()) {
+      importLines.add("");
+      importLines.addAll(nonStaticLines);
+    } else {
+      importLines.addAll(nonStaticLines);
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("/*").append(eol).append(" * Generated source for benchmarks.").append(eol)
+        .append(" */").append(eol);
+    sb.append("package ").append(pkg).append(';').append(eol).append(eol);
+    importLines.forEach(line -> sb.append(line).append(eol));
+    sb.append(eol);
+    sb.append("/**").append(eol).append(" * Uses {@link ")
+        .append(names.isEmpty() ? "Object"
+            : names.first().substring(names.first().lastIndexOf('.') + 1))
+        .append("}.").append(eol).append(" */").append(eol);
+    sb.append("public class ").append(className).append(" {").append(eol);
+    double lines = medianLines * Math.exp(sizeSpread * random.nextGaussian());
+    List<String> simpleNames = new ArrayList<>();
+    names.forEach(n -> simpleNames.add(n.substring(n.lastIndexOf('.') + 1)));
+    for (int m = 0; m * 6 < lines; m++) {
+      String type = simpleNames.isEmpty() ? "Object" : simpleNames.get(m % simpleNames.size());
+      sb.append(eol).append("  public ").append(type).append(" method").append(m).append("(")
+          .append(type).append(" arg) {").append(eol);
+      sb.append("    // keep the argument").append(eol);
+      sb.append("    ").append(type).append(" value = arg;").append(eol);
+      sb.append("    return value;").append(eol);
+      sb.append("  }").append(eol);
+    }
+    sb.append("}").append(eol);
+    return sb.toString();
+  }
+
+  private String importLine(Random random, String line) {
+    if (random.nextDouble() < commentDensity) {
+      return "// comment for the next import" + eol + line;
+    }
+    return line;
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import org.codehaus.plexus.util.AbstractScanner;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SourceWalkerTest {
+
+  @TempDir
+  public Path folder;
+
+  private static final String[] FILES =
+      {"A.java", "B.txt", "p/C.java", "p/q/D.JAVA", "p/generated/E.java", "p/generated/deep/F.java",
+          "generated/G.java", "p/Generated.java", "p/.git/H.java", "p/CVS/I.java", "r/s/t/u/J.java",
+          "r/s/Test.java", "r/s/KTest.java", "r/s/x.java~"};
+
+  private Path root() throws IOException {
+    for (String file : FILES) {
+      Path path = folder.resolve(file);
+      Files.createDirectories(path.getParent());
+      Files.write(path, new byte[0]);
+    }
+    return folder;
+  }
+
+  private static Set<String> scan(Path root, String[] includes, String[] excludes) {
+    DirectoryScanner ds = new DirectoryScanner();
+    ds.setBasedir(root.toFile());
+    ds.setIncludes(includes);
+    ds.setExcludes(excludes);
+    ds.addDefaultExcludes();
+    ds.setCaseSensitive(false);
+    ds.setFollowSymlinks(false);
+    ds.scan();
+    return Arrays.stream(ds.getIncludedFiles()).map(f -> f.replace('\\', '/'))
+        .collect(Collectors.toCollection(TreeSet::new));
+  }
+
+  private static Set<String> walk(Path root, String[] includes, String[] excludes) {
+    return new SourceWalker(includes, excludes, AbstractScanner.DEFAULTEXCLUDES).walk(List.of(root))
+        .map(p -> root.relativize(p).toString().replace('\\', '/'))
+        .collect(Collectors.toCollection(TreeSet::new));
+  }
+
+  @Test
+  public void testSameFilesAsDirectoryScanner() throws IOException {
+    Path root = root();
+    String[][][] cases = {{{"**/*.java"}, null}, {{"**/*.java"}, {"**/generated/**"}},
+        {{"**/*.java"}, {"p/"}}, {{"p/*.java", "r/**/*Test.java"}, {"**/K*"}},
+        {{"*.java"}, {"p/**"}}, {{"**/?.java"}, {"**/generated"}}, {{"**"}, {"%regex[.*/s/.*]"}},
+        {{"**/*.java"}, {"generated/**", "r\\s\\"}}, {{"%ant[p/**]"}, {"**/q/**/*.java"}}};
+    for (String[][] c : cases) {
+      String description = Arrays.toString(c[0]) + " - " + Arrays.toString(c[1]);
+      Set<String> expected = scan(root, c[0], c[1]);
+      assertFalse(expected.isEmpty(), description);
+      assertEquals(expected, walk(root, c[0], c[1]), description);
+    }
+  }
+
+  @Test
+  public void testExcludedSubtrees() {
+    SourceWalker walker = new SourceWalker(new String[] {"**/*.java"},
+        new String[] {"**/generated/**", "x/y/"}, new String[] {"**/.git", "**/.git/**"});
+    assertTrue(walker.isExcludedSubtree(Paths.get("generated")));
+    assertTrue(walker.isExcludedSubtree(Paths.get("a", "GENERATED")));
+    assertTrue(walker.isExcludedSubtree(Paths.get("a", "generated", "b")));
+    assertTrue(walker.isExcludedSubtree(Paths.get("x", "y")));
+    assertTrue(walker.isExcludedSubtree(Paths.get("a", ".git")));
+    assertFalse(walker.isExcludedSubtree(Paths.get("a", "generatedSources")));
+    assertFalse(walker.isExcludedSubtree(Paths.get("x")));
+    assertFalse(walker.isExcludedSubtree(Paths.get("a", "x", "y")));
+    assertTrue(walker.isIncluded(Paths.get("a", "B.java")));
+    assertFalse(walker.isIncluded(Paths.get("a", "generated", "B.java")));
+  }
+
+  @Test
+  public void testManyRootsAndSubtrees() throws IOException {
+    Set<Path> expected = new TreeSet<>();
+    for (int i = 0; i < 40; i++) {
+      for (int j = 0; j < 25; j++) {
+        Path file = folder.resolve("root" + i % 2).resolve("d" + i).resolve("e" + j % 5)
+            .resolve("F" + j + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[0]);
+        expected.add(file);
+      }
+    }
+    List<Path> found = new SourceWalker(new String[] {"**/*.java"}, null, new String[0])
+        .walk(List.of(folder.resolve("root0"), folder.resolve("root1")))
+        .collect(Collectors.toList());
+    assertEquals(expected.size(), found.size());
+    assertEquals(expected, new TreeSet<>(found));
+  }
+
+  @Test
+  public void testUnreadableDirectoriesAreSkipped() throws IOException {
+    Path root = root();
+    Path missing = folder.resolve("missing");
+    List<Path> unreadable = new CopyOnWriteArrayList<>();
+    Set<String> found = new SourceWalker(new String[] {"**/*.java"}, null, new String[0],
+        (path, e) -> unreadable.add(path)).walk(List.of(missing, root.resolve("r")))
+        .map(p -> root.relativize(p).toString().replace('\\', '/'))
+        .collect(Collectors.toCollection(TreeSet::new));
+    assertEquals(Set.of("r/s/t/u/J.java", "r/s/Test.java", "r/s/KTest.java"), found);
+    assertEquals(List.of(missing), unreadable);
+  }
+
+}
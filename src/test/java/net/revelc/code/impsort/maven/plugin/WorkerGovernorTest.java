@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.revelc.code.impsort.maven.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.jupiter.api.Test;
+
+public class WorkerGovernorTest {
+
+  private static Iterator<Integer> items(int count) {
+    return IntStream.range(0, count).iterator();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Test
+  public void testThreadsAreCapped() throws Exception {
+    WorkerGovernor governor = new WorkerGovernor(100);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    AtomicInteger processed = new AtomicInteger();
+    MojoFailureException failure = governor.run(3, items(100), i -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      sleep(1);
+      running.decrementAndGet();
+      processed.incrementAndGet();
+      return i % 10 == 0 ? new MojoFailureException("failed " + i) : null;
+    });
+    assertEquals(100, processed.get());
+    assertTrue(maxRunning.get() <= 3, "ran " + maxRunning.get() + " at once");
+    assertEquals(9, failure.getSuppressed().length);
+    assertTrue(governor.getWorkers() <= 3);
+    assertNull(governor.run(3, items(0), i -> null));
+
+    // idle workers stop
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (governor.getWorkers() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, governor.getWorkers());
+  }
+
+  @Test
+  public void testConcurrentJobsShareWorkers() throws Exception {
+    WorkerGovernor governor = new WorkerGovernor(100);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    AtomicInteger largeDone = new AtomicInteger();
+    CompletableFuture<MojoFailureException> large = CompletableFuture.supplyAsync(() -> {
+      try {
+        return governor.run(2, items(300), i -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          sleep(2);
+          running.decrementAndGet();
+          largeDone.incrementAndGet();
+          return null;
+        });
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    while (largeDone.get() < 10) {
+      Thread.sleep(1);
+    }
+
+    // a job started later is served in turn with the running one, rather than after it
+    assertNull(governor.run(2, items(20), i -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      sleep(2);
+      running.decrementAndGet();
+      return null;
+    }));
+    assertTrue(largeDone.get() < 200, largeDone.get() + " done before the small job finished");
+    assertNull(large.get());
+    assertEquals(300, largeDone.get());
+    assertTrue(maxRunning.get() <= 2, "ran " + maxRunning.get() + " at once");
+  }
+
+  @Test
+  public void testBlockedWorkersAreReplaced() throws Exception {
+    WorkerGovernor governor = new WorkerGovernor(100);
+    InFlightBudget budget = governor.budget(100, 0);
+    assertSame(budget, governor.budget(100, 0));
+    long held = budget.acquire(100);
+    // the budget is held by an item of the other job, which needs a worker to be processed
+    CompletableFuture<MojoFailureException> waiting = CompletableFuture.supplyAsync(() -> {
+      try {
+        return governor.run(1, items(1), i -> {
+          try {
+            budget.release(budget.acquire(10));
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          return null;
+        });
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    // another worker is started in place of the waiting one
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (governor.getWorkers() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(2, governor.getWorkers());
+    assertNull(governor.run(1, items(1), i -> {
+      budget.release(held);
+      return null;
+    }));
+    assertNull(waiting.get(10, TimeUnit.SECONDS));
+    assertEquals(0, budget.getInFlight());
+  }
+
+  @Test
+  public void testErrorsAreRethrown() {
+    WorkerGovernor governor = new WorkerGovernor(100);
+    IllegalStateException error = new IllegalStateException("bad item");
+    assertSame(error,
+        assertThrows(IllegalStateException.class, () -> governor.run(2, items(50), i -> {
+          if (i == 7) {
+            throw error;
+          }
+          return null;
+        })));
+    Iterator<Integer> failing = new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public Integer next() {
+        throw new IllegalStateException("cannot list");
+      }
+    };
+    assertEquals("cannot list",
+        assertThrows(IllegalStateException.class, () -> governor.run(2, failing, i -> null))
+            .getMessage());
+  }
+
+}